@@ -42,10 +42,43 @@ public class CIPTA extends ProgramAnalysis {
     @Override
     public PointerAnalysisResult analyze() {
         HeapModel heapModel = new AllocationSiteBasedModel(getOptions());
-        Solver solver = new Solver(heapModel);
-        solver.solve();
-        CIPTAResult result = solver.getResult();
+        int budget = getDemandBudget();
+        if (budget > 0) {
+            return new DemandPTAResult(new DemandSolver(heapModel, budget),
+                    () -> solve(heapModel));
+        }
+        CIPTAResult result = solve(heapModel);
         new ResultProcessor(getOptions()).process(result);
         return result;
     }
+
+    private CIPTAResult solve(HeapModel heapModel) {
+        int parallelism = getParallelism();
+        Solver solver = parallelism > 1
+                ? new WaveSolver(heapModel, parallelism)
+                : new Solver(heapModel);
+        solver.solve();
+        return solver.getResult();
+    }
+
+    /**
+     * @return the budget (number of solving steps) of each points-to
+     * query, given by option "demand-budget". If it is present and
+     * positive, the points-to sets are computed on demand, and the
+     * result processor (dumping and comparing results) is skipped.
+     */
+    private int getDemandBudget() {
+        Object budget = getOptions().get("demand-budget");
+        return budget instanceof Integer i ? i : 0;
+    }
+
+    /**
+     * @return the number of threads for propagating points-to sets, given
+     * by option "parallelism". If it is absent or not greater than 1,
+     * the analysis runs sequentially.
+     */
+    private int getParallelism() {
+        Object parallelism = getOptions().get("parallelism");
+        return parallelism instanceof Integer i ? i : 1;
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.ci;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
+import pascal.taie.analysis.pta.PointerAnalysisResult;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Pointer analysis result that answers points-to queries on demand
+ * by {@link DemandSolver}. The queries that run out of budget, and
+ * the queries about the whole program, fall back to the exhaustive
+ * result, which is computed at the first fallback. After that,
+ * the callers used by the solver are filtered through the call graph
+ * of the exhaustive result.
+ * <p>
+ * The returned points-to sets are unmodifiable.
+ */
+class DemandPTAResult implements PointerAnalysisResult {
+
+    private static final Logger logger = LogManager.getLogger(DemandPTAResult.class);
+
+    private final DemandSolver solver;
+
+    private final Supplier<PointerAnalysisResult> exhaustiveSolver;
+
+    private PointerAnalysisResult exhaustiveResult;
+
+    DemandPTAResult(DemandSolver solver,
+                    Supplier<PointerAnalysisResult> exhaustiveSolver) {
+        this.solver = solver;
+        this.exhaustiveSolver = exhaustiveSolver;
+    }
+
+    @Override
+    public Collection<Var> getVars() {
+        return getExhaustiveResult().getVars();
+    }
+
+    @Override
+    public Collection<Obj> getObjects() {
+        return getExhaustiveResult().getObjects();
+    }
+
+    @Override
+    public Set<Obj> getPointsToSet(Var var) {
+        Set<Obj> pts = solver.getPointsToSet(var);
+        return Collections.unmodifiableSet(pts != null ? pts
+                : getExhaustiveResult().getPointsToSet(var));
+    }
+
+    @Override
+    public Set<Obj> getPointsToSet(Var base, JField field) {
+        Set<Obj> pts = solver.getPointsToSet(base, field);
+        return Collections.unmodifiableSet(pts != null ? pts
+                : getExhaustiveResult().getPointsToSet(base, field));
+    }
+
+    @Override
+    public Set<Obj> getPointsToSet(JField field) {
+        Set<Obj> pts = solver.getPointsToSet(field);
+        return Collections.unmodifiableSet(pts != null ? pts
+                : getExhaustiveResult().getPointsToSet(field));
+    }
+
+    @Override
+    public CallGraph<Invoke, JMethod> getCallGraph() {
+        return getExhaustiveResult().getCallGraph();
+    }
+
+    /**
+     * @return the exhaustive result, which is computed at the first call.
+     */
+    synchronized PointerAnalysisResult getExhaustiveResult() {
+        if (exhaustiveResult == null) {
+            logger.info("Falling back to exhaustive pointer analysis");
+            exhaustiveResult = exhaustiveSolver.get();
+            solver.setCallGraph(exhaustiveResult.getCallGraph());
+        }
+        return exhaustiveResult;
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.ci;
+
+import pascal.taie.World;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
+import pascal.taie.analysis.graph.callgraph.CallGraphs;
+import pascal.taie.analysis.pta.core.DispatchCache;
+import pascal.taie.analysis.pta.core.SubtypeCache;
+import pascal.taie.analysis.pta.core.heap.HeapModel;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.FieldAccess;
+import pascal.taie.ir.exp.InstanceFieldAccess;
+import pascal.taie.ir.exp.InvokeInstanceExp;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.proginfo.MethodRef;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.LoadArray;
+import pascal.taie.ir.stmt.LoadField;
+import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.ir.stmt.StoreArray;
+import pascal.taie.ir.stmt.StoreField;
+import pascal.taie.language.classes.ClassHierarchy;
+import pascal.taie.language.classes.JClass;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.type.Type;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Demand-driven context-insensitive pointer analysis.
+ * <p>
+ * Instead of solving the whole program, this solver builds the PFG
+ * backwards from the queried pointers: when a pointer is demanded,
+ * only the edges flowing into it are added, and the pointers at
+ * their sources are demanded in turn. Loads, stores and calls whose
+ * effects depend on the objects pointed to by a base variable are
+ * handled by watching the points-to set of the base variable, so
+ * call sites are resolved on the fly by the objects that reach them.
+ * <p>
+ * Each query is given a budget of solving steps. The solver state
+ * persists across queries, so a query that runs out of budget leaves
+ * its remaining work to later queries.
+ * <p>
+ * The callers of each method are found by class hierarchy analysis
+ * (CHA) from the main method, hence the results may be less precise
+ * than (i.e., supersets of) the ones of {@link Solver} for the methods
+ * that are reachable by CHA but not by pointer analysis. Once the call
+ * graph of the exhaustive analysis is given by {@link #setCallGraph},
+ * the callers are taken from it instead, and the results are the same
+ * as the ones of {@link Solver}.
+ * <p>
+ * The query methods are synchronized, as the solver state is shared
+ * by all queries.
+ */
+class DemandSolver {
+
+    private final HeapModel heapModel;
+
+    /**
+     * Maximum number of solving steps for each query.
+     */
+    private final int budget;
+
+    private PointerFlowGraph pointerFlowGraph = new PointerFlowGraph();
+
+    private WorkList workList = new WorkList();
+
+    /**
+     * Demanded pointers whose incoming edges have not been added.
+     */
+    private Queue<Pointer> demands = new ArrayDeque<>();
+
+    private Set<Pointer> demanded = Sets.newSet();
+
+    /**
+     * Actions to take on the objects that flow to each pointer.
+     */
+    private Map<Pointer, List<Consumer<Obj>>> watchers = Maps.newMap();
+
+    private final SubtypeCache subtypeCache =
+            new SubtypeCache(World.get().getTypeSystem());
+
+    private final DispatchCache dispatchCache = new DispatchCache();
+
+    private ProgramIndex index;
+
+    /**
+     * Call graph of the exhaustive analysis, or null if it is not given.
+     */
+    @Nullable
+    private CallGraph<Invoke, JMethod> callGraph;
+
+    DemandSolver(HeapModel heapModel, int budget) {
+        this.heapModel = heapModel;
+        this.budget = budget;
+    }
+
+    /**
+     * Takes the callers of each method from given call graph instead of
+     * CHA. The state built so far may contain flows from spurious CHA
+     * callers, thus it is discarded, and later queries start over.
+     */
+    synchronized void setCallGraph(CallGraph<Invoke, JMethod> callGraph) {
+        this.callGraph = callGraph;
+        pointerFlowGraph = new PointerFlowGraph();
+        workList = new WorkList();
+        demands = new ArrayDeque<>();
+        demanded = Sets.newSet();
+        watchers = Maps.newMap();
+        index = null;
+    }
+
+    /**
+     * @return the points-to set of given variable, or null if the query
+     * runs out of budget.
+     */
+    @Nullable
+    synchronized Set<Obj> getPointsToSet(Var var) {
+        return query(pointerFlowGraph.getVarPtr(var));
+    }
+
+    /**
+     * @return the points-to set of base.field, or null if the query
+     * runs out of budget.
+     */
+    @Nullable
+    synchronized Set<Obj> getPointsToSet(Var base, JField field) {
+        Set<Obj> bases = getPointsToSet(base);
+        if (bases == null) {
+            return null;
+        }
+        Set<Obj> pts = Sets.newHybridSet();
+        for (Obj obj : bases) {
+            Set<Obj> fieldPts = query(
+                    pointerFlowGraph.getInstanceField(obj, field));
+            if (fieldPts == null) {
+                return null;
+            }
+            pts.addAll(fieldPts);
+        }
+        return pts;
+    }
+
+    /**
+     * @return the points-to set of given static field, or null if
+     * the query runs out of budget.
+     */
+    @Nullable
+    synchronized Set<Obj> getPointsToSet(JField field) {
+        return query(pointerFlowGraph.getStaticField(field));
+    }
+
+    @Nullable
+    private Set<Obj> query(Pointer pointer) {
+        if (index == null) {
+            index = new ProgramIndex();
+        }
+        demand(pointer);
+        int steps = 0;
+        while (!demands.isEmpty() || !workList.isEmpty()) {
+            if (++steps > budget) {
+                return null;
+            }
+            if (!demands.isEmpty()) {
+                addIncomingEdges(demands.poll());
+            } else {
+                WorkList.Entry entry = workList.pollEntry();
+                propagate(entry.pointer(), entry.pointsToSet());
+            }
+        }
+        return pointer.getPointsToSet().getObjects();
+    }
+
+    private void demand(Pointer pointer) {
+        if (demanded.add(pointer)) {
+            demands.add(pointer);
+        }
+    }
+
+    /**
+     * Adds the PFG edges that flow into given pointer.
+     */
+    private void addIncomingEdges(Pointer pointer) {
+        if (pointer instanceof VarPtr varPtr) {
+            addIncomingEdges(varPtr);
+        } else if (pointer instanceof StaticField staticField) {
+            for (Var source : index.staticStores.get(staticField.getField())) {
+                addPFGEdge(pointerFlowGraph.getVarPtr(source), pointer);
+            }
+        } else if (pointer instanceof InstanceField instanceField) {
+            Obj base = instanceField.getBase();
+            for (StoreField store : index.instanceStores.get(instanceField.getField())) {
+                Var source = store.getRValue();
+                watch(getBase(store.getFieldAccess()), obj -> {
+                    if (obj.equals(base)) {
+                        addPFGEdge(pointerFlowGraph.getVarPtr(source), pointer);
+                    }
+                });
+            }
+        } else if (pointer instanceof ArrayIndex arrayIndex) {
+            Obj array = arrayIndex.getArray();
+            for (StoreArray store : index.arrayStores) {
+                Var source = store.getRValue();
+                watch(store.getArrayAccess().getBase(), obj -> {
+                    if (obj.equals(array)) {
+                        addPFGEdge(pointerFlowGraph.getVarPtr(source), pointer);
+                    }
+                });
+            }
+        }
+    }
+
+    private void addIncomingEdges(VarPtr varPtr) {
+        Var var = varPtr.getVar();
+        PointsToSet objs = new PointsToSet();
+        index.objects.get(var).forEach(objs::addObject);
+        if (!objs.isEmpty()) {
+            workList.addEntry(varPtr, objs);
+        }
+        for (MethodTemplate.Assign assign : index.assigns.get(var)) {
+            VarPtr source = pointerFlowGraph.getVarPtr(assign.source());
+            if (assign.castType() != null) {
+                addPFGEdge(source, varPtr, assign.castType());
+            } else {
+                addPFGEdge(source, varPtr);
+            }
+        }
+        for (JField field : index.staticLoads.get(var)) {
+            addPFGEdge(pointerFlowGraph.getStaticField(field), varPtr);
+        }
+        for (LoadField load : index.instanceLoads.get(var)) {
+            JField field = load.getFieldRef().resolve();
+            watch(getBase(load.getFieldAccess()), obj -> addPFGEdge(
+                    pointerFlowGraph.getInstanceField(obj, field), varPtr));
+        }
+        for (LoadArray load : index.arrayLoads.get(var)) {
+            watch(load.getArrayAccess().getBase(), obj -> addPFGEdge(
+                    pointerFlowGraph.getArrayIndex(obj), varPtr));
+        }
+        // return values of the callees
+        for (Invoke callSite : index.callResults.get(var)) {
+            if (callSite.isStatic()) {
+                addReturnEdges(CallGraphs.resolveCallee(null, callSite), varPtr);
+            } else {
+                watch(getReceiver(callSite), recv -> addReturnEdges(
+                        dispatchCache.resolveCallee(callSite, recv.getType()), varPtr));
+            }
+        }
+        // receiver objects and arguments from the callers
+        JMethod method = var.getMethod();
+        IR ir = method.getIR();
+        boolean isThis = var == ir.getThis();
+        int paramIndex = ir.getParams().indexOf(var);
+        if (!isThis && paramIndex < 0) {
+            return;
+        }
+        for (Invoke callSite : index.callers.get(method)) {
+            if (callSite.isStatic()) {
+                addPFGEdge(pointerFlowGraph.getVarPtr(
+                        callSite.getInvokeExp().getArg(paramIndex)), varPtr);
+                continue;
+            }
+            watch(getReceiver(callSite), recv -> {
+                if (method.equals(dispatchCache.resolveCallee(
+                        callSite, recv.getType()))) {
+                    if (isThis) {
+                        workList.addEntry(varPtr, new PointsToSet(recv));
+                    } else {
+                        addPFGEdge(pointerFlowGraph.getVarPtr(
+                                callSite.getInvokeExp().getArg(paramIndex)),
+                                varPtr);
+                    }
+                }
+            });
+        }
+    }
+
+    private void addReturnEdges(@Nullable JMethod callee, VarPtr result) {
+        if (callee != null && !callee.isAbstract()) {
+            for (Var ret : callee.getIR().getReturnVars()) {
+                addPFGEdge(pointerFlowGraph.getVarPtr(ret), result);
+            }
+        }
+    }
+
+    /**
+     * Adds an edge "source -> target" to the PFG, and demands the source.
+     * As in {@link Solver}, objects flowing to a variable must conform to
+     * its declared type.
+     */
+    private void addPFGEdge(Pointer source, Pointer target) {
+        Type filter = target instanceof VarPtr &&
+                !subtypeCache.isSubtype(target.getType(), source.getType()) ?
+                target.getType() : null;
+        addPFGEdge(source, target, filter);
+    }
+
+    /**
+     * Adds an edge "source -> target" with given type filter to the PFG,
+     * and demands the source.
+     */
+    private void addPFGEdge(Pointer source, Pointer target, @Nullable Type filter) {
+        if (pointerFlowGraph.addEdge(source, target, filter)) {
+            demand(source);
+            if (!source.getPointsToSet().isEmpty()) {
+                propagateAlong(source, target, source.getPointsToSet());
+            }
+        }
+    }
+
+    /**
+     * Takes the action on the objects pointed to by given variable,
+     * including the ones that reach it later.
+     */
+    private void watch(Var var, Consumer<Obj> action) {
+        VarPtr varPtr = pointerFlowGraph.getVarPtr(var);
+        demand(varPtr);
+        watchers.computeIfAbsent(varPtr, unused -> new ArrayList<>())
+                .add(action);
+        varPtr.getPointsToSet().forEach(action);
+    }
+
+    private void propagate(Pointer pointer, PointsToSet pointsToSet) {
+        PointsToSet delta = pointer.getPointsToSet().addAllDiff(pointsToSet);
+        if (!delta.isEmpty()) {
+            for (Pointer succ : pointerFlowGraph.getSuccsOf(pointer)) {
+                propagateAlong(pointer, succ, delta);
+            }
+            List<Consumer<Obj>> actions = watchers.get(pointer);
+            if (actions != null) {
+                actions.forEach(delta::forEach);
+            }
+        }
+    }
+
+    private void propagateAlong(Pointer source, Pointer target, PointsToSet pointsToSet) {
+        Set<Type> filters = pointerFlowGraph.getFilters(source, target);
+        PointsToSet filtered = pointsToSet;
+        if (filters != null) {
+            filtered = new PointsToSet();
+            for (Obj obj : pointsToSet) {
+                if (filters.stream().anyMatch(filter ->
+                        subtypeCache.isSubtype(filter, obj.getType()))) {
+                    filtered.addObject(obj);
+                }
+            }
+        }
+        if (!filtered.isEmpty()) {
+            workList.addEntry(target, filtered);
+        }
+    }
+
+    private static Var getBase(FieldAccess fieldAccess) {
+        return ((InstanceFieldAccess) fieldAccess).getBase();
+    }
+
+    private static Var getReceiver(Invoke callSite) {
+        return ((InvokeInstanceExp) callSite.getInvokeExp()).getBase();
+    }
+
+    /**
+     * Indexes the statements of the methods that are reachable from
+     * the main method, by the pointers they flow into. The reachable
+     * methods and their callers are taken from the call graph if it is
+     * given, otherwise they are found by CHA.
+     */
+    private class ProgramIndex {
+
+        private final MultiMap<Var, Obj> objects = Maps.newMultiMap();
+
+        private final MultiMap<Var, MethodTemplate.Assign> assigns = Maps.newMultiMap();
+
+        private final MultiMap<Var, JField> staticLoads = Maps.newMultiMap();
+
+        private final MultiMap<JField, Var> staticStores = Maps.newMultiMap();
+
+        private final MultiMap<Var, LoadField> instanceLoads = Maps.newMultiMap();
+
+        private final MultiMap<JField, StoreField> instanceStores = Maps.newMultiMap();
+
+        private final MultiMap<Var, LoadArray> arrayLoads = Maps.newMultiMap();
+
+        private final List<StoreArray> arrayStores = new ArrayList<>();
+
+        private final MultiMap<Var, Invoke> callResults = Maps.newMultiMap();
+
+        private final MultiMap<JMethod, Invoke> callers = Maps.newMultiMap();
+
+        private final ClassHierarchy hierarchy = World.get().getClassHierarchy();
+
+        private ProgramIndex() {
+            if (callGraph != null) {
+                callGraph.reachableMethods().forEach(method -> {
+                    indexTemplate(MethodTemplate.build(method, heapModel));
+                    method.getIR().forEach(this::indexStmt);
+                    callers.putAll(method, callGraph.getCallersOf(method));
+                });
+                return;
+            }
+            Set<JMethod> reachable = Sets.newSet();
+            Queue<JMethod> queue = new ArrayDeque<>();
+            JMethod main = World.get().getMainMethod();
+            reachable.add(main);
+            queue.add(main);
+            while (!queue.isEmpty()) {
+                JMethod method = queue.poll();
+                indexTemplate(MethodTemplate.build(method, heapModel));
+                for (Stmt stmt : method.getIR()) {
+                    if (stmt instanceof Invoke callSite) {
+                        for (JMethod callee : resolveCallees(callSite)) {
+                            callers.put(callee, callSite);
+                            if (reachable.add(callee)) {
+                                queue.add(callee);
+                            }
+                        }
+                    }
+                    indexStmt(stmt);
+                }
+            }
+        }
+
+        private void indexTemplate(MethodTemplate template) {
+            template.getObjects().forEach(objects::putAll);
+            template.getAssigns().forEach(a -> assigns.put(a.target(), a));
+            template.getStaticLoads().forEach(l -> staticLoads.put(l.target(), l.field()));
+            template.getStaticStores().forEach(s -> staticStores.put(s.field(), s.source()));
+        }
+
+        private void indexStmt(Stmt stmt) {
+            if (stmt instanceof LoadField load && !load.isStatic()) {
+                instanceLoads.put(load.getLValue(), load);
+            } else if (stmt instanceof StoreField store && !store.isStatic()) {
+                instanceStores.put(store.getFieldRef().resolve(), store);
+            } else if (stmt instanceof LoadArray load) {
+                arrayLoads.put(load.getLValue(), load);
+            } else if (stmt instanceof StoreArray store) {
+                arrayStores.add(store);
+            } else if (stmt instanceof Invoke callSite
+                    && callSite.getResult() != null && !callSite.isDynamic()) {
+                callResults.put(callSite.getResult(), callSite);
+            }
+        }
+
+        /**
+         * @return the callees of given call site by CHA.
+         */
+        private Set<JMethod> resolveCallees(Invoke callSite) {
+            if (callSite.isDynamic()) {
+                return Set.of();
+            }
+            MethodRef methodRef = callSite.getMethodRef();
+            if (callSite.isStatic() || callSite.isSpecial()) {
+                JMethod callee = methodRef.resolveNullable();
+                return callee != null && !callee.isAbstract()
+                        ? Set.of(callee) : Set.of();
+            }
+            Set<JMethod> callees = Sets.newHybridSet();
+            for (JClass subclass : hierarchy.getAllSubclassesOf(
+                    methodRef.getDeclaringClass(), true)) {
+                if (!subclass.isAbstract()) {
+                    JMethod callee = hierarchy.dispatch(subclass, methodRef);
+                    if (callee != null && !callee.isAbstract()) {
+                        callees.add(callee);
+                    }
+                }
+            }
+            return callees;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.ci;
+
+import pascal.taie.analysis.graph.callgraph.CallGraphs;
+import pascal.taie.analysis.pta.core.heap.HeapModel;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.CastExp;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Cast;
+import pascal.taie.ir.stmt.Copy;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.LoadField;
+import pascal.taie.ir.stmt.New;
+import pascal.taie.ir.stmt.StmtVisitor;
+import pascal.taie.ir.stmt.StoreField;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.type.ReferenceType;
+import pascal.taie.language.type.Type;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PFG template of a method, which holds the objects, PFG edges and
+ * static calls that the solver adds when the method becomes reachable,
+ * so that they can be added in bulk.
+ * <p>
+ * Unlike the original solver, which ignored cast statements, a cast
+ * {@code x = (T) y} is modeled as an edge {@code y -> x} filtered by
+ * {@code T}, so x points to the objects of y that are instances of T
+ * (instead of nothing). This changes the points-to sets of cast targets.
+ */
+class MethodTemplate {
+
+    /**
+     * Map from variable to the objects allocated to it.
+     */
+    private final Map<Var, List<Obj>> objects;
+
+    private final List<Assign> assigns;
+
+    private final List<StaticLoad> staticLoads;
+
+    private final List<StaticStore> staticStores;
+
+    private final List<StaticCall> staticCalls;
+
+    /**
+     * Classes of pointer-equivalent variables, see {@link VarSubstitution}.
+     */
+    private final Collection<List<Var>> equivalentVars;
+
+    private MethodTemplate(Map<Var, List<Obj>> objects, List<Assign> assigns,
+                           List<StaticLoad> staticLoads,
+                           List<StaticStore> staticStores,
+                           List<StaticCall> staticCalls,
+                           Collection<List<Var>> equivalentVars) {
+        this.objects = objects;
+        this.assigns = assigns;
+        this.staticLoads = staticLoads;
+        this.staticStores = staticStores;
+        this.staticCalls = staticCalls;
+        this.equivalentVars = equivalentVars;
+    }
+
+    /**
+     * Builds the template of given method.
+     */
+    static MethodTemplate build(JMethod method, HeapModel heapModel) {
+        IR ir = method.getIR();
+        Builder builder = new Builder(heapModel);
+        ir.forEach(stmt -> stmt.accept(builder));
+        Map<Var, List<Obj>> objects = Maps.newMap(builder.objects.size());
+        builder.objects.forEach((var, objs) -> objects.put(var, List.copyOf(objs)));
+        return new MethodTemplate(objects,
+                List.copyOf(builder.assigns),
+                List.copyOf(builder.staticLoads),
+                List.copyOf(builder.staticStores),
+                List.copyOf(builder.staticCalls),
+                VarSubstitution.getEquivalentVars(ir));
+    }
+
+    Map<Var, List<Obj>> getObjects() {
+        return objects;
+    }
+
+    List<Assign> getAssigns() {
+        return assigns;
+    }
+
+    List<StaticLoad> getStaticLoads() {
+        return staticLoads;
+    }
+
+    List<StaticStore> getStaticStores() {
+        return staticStores;
+    }
+
+    List<StaticCall> getStaticCalls() {
+        return staticCalls;
+    }
+
+    Collection<List<Var>> getEquivalentVars() {
+        return equivalentVars;
+    }
+
+    /**
+     * Edge "source -> target" for a copy or a cast. For casts,
+     * {@code castType} is the type filter of the edge.
+     */
+    record Assign(Var source, Var target, @Nullable Type castType) {
+    }
+
+    /**
+     * Edge "T.f -> target".
+     */
+    record StaticLoad(JField field, Var target) {
+    }
+
+    /**
+     * Edge "source -> T.f".
+     */
+    record StaticStore(Var source, JField field) {
+    }
+
+    record StaticCall(Invoke callSite, JMethod callee) {
+    }
+
+    /**
+     * Collects the template elements of statements, removing duplicates.
+     */
+    private static class Builder implements StmtVisitor<Void> {
+
+        private final HeapModel heapModel;
+
+        private final Map<Var, Set<Obj>> objects = Maps.newMap();
+
+        private final Set<Assign> assigns = Sets.newHybridOrderedSet();
+
+        private final Set<StaticLoad> staticLoads = Sets.newHybridOrderedSet();
+
+        private final Set<StaticStore> staticStores = Sets.newHybridOrderedSet();
+
+        private final List<StaticCall> staticCalls = new ArrayList<>();
+
+        private Builder(HeapModel heapModel) {
+            this.heapModel = heapModel;
+        }
+
+        @Override
+        public Void visit(New stmt) {
+            objects.computeIfAbsent(stmt.getLValue(),
+                    unused -> Sets.newHybridOrderedSet())
+                    .add(heapModel.getObj(stmt));
+            return null;
+        }
+
+        @Override
+        public Void visit(Copy stmt) {
+            assigns.add(new Assign(stmt.getRValue(), stmt.getLValue(), null));
+            return null;
+        }
+
+        @Override
+        public Void visit(Cast stmt) {
+            CastExp cast = stmt.getRValue();
+            if (cast.getCastType() instanceof ReferenceType) {
+                assigns.add(new Assign(cast.getValue(), stmt.getLValue(),
+                        cast.getCastType()));
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(LoadField stmt) {
+            if (stmt.isStatic()) {
+                staticLoads.add(new StaticLoad(
+                        stmt.getFieldRef().resolve(), stmt.getLValue()));
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(StoreField stmt) {
+            if (stmt.isStatic()) {
+                staticStores.add(new StaticStore(
+                        stmt.getRValue(), stmt.getFieldRef().resolve()));
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Invoke stmt) {
+            if (stmt.isStatic()) {
+                staticCalls.add(new StaticCall(stmt,
+                        CallGraphs.resolveCallee(null, stmt)));
+            }
+            return null;
+        }
+    }
+}
@@ -22,6 +22,8 @@
 
 package pascal.taie.analysis.pta.ci;
 
+import pascal.taie.language.type.Type;
+
 /**
  * Represents pointers in pointer analysis and nodes in pointer flow graph.
  *
@@ -29,9 +31,35 @@ package pascal.taie.analysis.pta.ci;
  */
 abstract class Pointer {
 
-    private final PointsToSet pointsToSet = new PointsToSet();
+    /**
+     * Index of this pointer in its PFG, assigned by {@link PointerFlowGraph}.
+     */
+    private int index = -1;
+
+    private PointsToSet pointsToSet = new PointsToSet();
+
+    int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
 
     PointsToSet getPointsToSet() {
         return pointsToSet;
     }
+
+    /**
+     * Sets the points-to set of this pointer. Pointers in a collapsed
+     * cycle of the PFG share the same points-to set.
+     */
+    void setPointsToSet(PointsToSet pointsToSet) {
+        this.pointsToSet = pointsToSet;
+    }
+
+    /**
+     * @return the type of this pointer.
+     */
+    abstract Type getType();
 }
@@ -23,26 +23,46 @@
 package pascal.taie.analysis.pta.ci;
 
 import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.analysis.pta.core.heap.ObjIndexer;
 import pascal.taie.ir.exp.Var;
 import pascal.taie.language.classes.JField;
+import pascal.taie.language.type.Type;
+import pascal.taie.util.collection.LongMap;
 import pascal.taie.util.collection.Maps;
 import pascal.taie.util.collection.MultiMap;
 import pascal.taie.util.collection.Sets;
-import pascal.taie.util.collection.TwoKeyMap;
 
+import javax.annotation.Nullable;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Represents pointer flow graph in pointer analysis.
+ * <p>
+ * Each pointer is assigned a dense index, and the graph is stored
+ * over the indexes: successors in growable int arrays, and edges
+ * (with their type filters) in a {@link LongMap} keyed by packed
+ * (source, target) indexes, so that edges need no objects.
  */
 class PointerFlowGraph {
 
+    private static final int DEFAULT_CAPACITY = 16;
+
     /**
-     * Set of all pointer in this PFG.
+     * All pointers in this PFG, indexed by {@link Pointer#getIndex()}.
      */
-    private final Set<Pointer> pointers = Sets.newSet();
+    private final List<Pointer> pointers = new ArrayList<>();
 
     /**
      * Map from Variable to Var node.
@@ -55,47 +75,67 @@ class PointerFlowGraph {
     private final Map<JField, StaticField> staticFields = Maps.newMap();
 
     /**
-     * Map from (Obj, Field) to InstanceField node.
+     * Map from instance field to its index, which is used in
+     * the keys of {@link #instanceFields}.
+     */
+    private final Map<JField, Integer> fieldIndexes = Maps.newMap();
+
+    /**
+     * Map from packed (Obj index, field index) to InstanceField node.
+     */
+    private final LongMap<InstanceField> instanceFields = new LongMap<>();
+
+    /**
+     * Map from Obj (array) index to ArrayIndex node.
      */
-    private final TwoKeyMap<Obj, JField, InstanceField> instanceFields = Maps.newTwoKeyMap();
+    private final LongMap<ArrayIndex> arrayIndexes = new LongMap<>();
 
     /**
-     * Map from Obj (array) to ArrayIndex node.
+     * Successors of each pointer; {@code succs[i]} holds
+     * {@code succCounts[i]} successors of pointer i, or is null.
      */
-    private final Map<Obj, ArrayIndex> arrayIndexes = Maps.newMap();
+    private int[][] succs = new int[DEFAULT_CAPACITY][];
+
+    private int[] succCounts = new int[DEFAULT_CAPACITY];
 
     /**
-     * Map from a pointer (node) to its successors in PFG.
+     * Map from a packed edge (source, target) to its type filters.
+     * Only objects whose types are subtypes of any of the filters can
+     * flow through the edge. Edges without filters are mapped to null.
      */
-    private final MultiMap<Pointer, Pointer> successors = Maps.newMultiMap();
+    private final LongMap<Set<Type>> edges = new LongMap<>();
+
+    /**
+     * Parent of each pointer in the union-find forest of collapsed
+     * cycles. Representatives are their own parents.
+     */
+    private int[] parents = new int[DEFAULT_CAPACITY];
+
+    /**
+     * Map from a representative to the other pointers collapsed into it.
+     */
+    private final MultiMap<Pointer, Pointer> members = Maps.newMultiMap();
 
     /**
      * Returns all pointers in this PFG.
      */
-    Set<Pointer> getPointers() {
-        return Collections.unmodifiableSet(pointers);
+    Collection<Pointer> getPointers() {
+        return Collections.unmodifiableList(pointers);
     }
 
     /**
      * @return the corresponding Var node for the given variable.
      */
     VarPtr getVarPtr(Var var) {
-        return varPtrs.computeIfAbsent(var, v -> {
-            VarPtr varPtr = new VarPtr(v);
-            pointers.add(varPtr);
-            return varPtr;
-        });
+        return varPtrs.computeIfAbsent(var, v -> register(new VarPtr(v)));
     }
 
     /**
      * @return the corresponding StaticField node for the given static field.
      */
     StaticField getStaticField(JField field) {
-        return staticFields.computeIfAbsent(field, f -> {
-            StaticField staticField = new StaticField(f);
-            pointers.add(staticField);
-            return staticField;
-        });
+        return staticFields.computeIfAbsent(field,
+                f -> register(new StaticField(f)));
     }
 
     /**
@@ -103,38 +143,333 @@ class PointerFlowGraph {
      * and instance field.
      */
     InstanceField getInstanceField(Obj base, JField field) {
-        return instanceFields.computeIfAbsent(base, field, (b, f) -> {
-                InstanceField instanceField = new InstanceField(b, f);
-                pointers.add(instanceField);
-                return instanceField;
-            });
+        int fieldIndex = fieldIndexes.computeIfAbsent(
+                field, unused -> fieldIndexes.size());
+        return instanceFields.computeIfAbsent(
+                pack(ObjIndexer.getIndex(base), fieldIndex),
+                unused -> register(new InstanceField(base, field)));
     }
 
     /**
      * @return the corresponding ArrayIndex node for the given array object.
      */
     ArrayIndex getArrayIndex(Obj array) {
-        return arrayIndexes.computeIfAbsent(array, a -> {
-            ArrayIndex arrayIndex = new ArrayIndex(a);
-            pointers.add(arrayIndex);
-            return arrayIndex;
-        });
+        return arrayIndexes.computeIfAbsent(ObjIndexer.getIndex(array),
+                unused -> register(new ArrayIndex(array)));
     }
 
     /**
-     * Adds an edge (source -> target) to this PFG.
+     * Assigns the next index to given new pointer.
+     */
+    private <P extends Pointer> P register(P pointer) {
+        int index = pointers.size();
+        pointer.setIndex(index);
+        pointers.add(pointer);
+        if (index == parents.length) {
+            int capacity = index * 2;
+            succs = Arrays.copyOf(succs, capacity);
+            succCounts = Arrays.copyOf(succCounts, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+        }
+        parents[index] = index;
+        return pointer;
+    }
+
+    /**
+     * Adds an edge (source -> target) to this PFG. Both ends are
+     * replaced by their representatives, and edges inside a collapsed
+     * cycle are dropped.
      *
      * @return true if this PFG changed as a result of the call,
      * otherwise false.
      */
     boolean addEdge(Pointer source, Pointer target) {
-        return successors.put(source, target);
+        return addEdge(source, target, null);
+    }
+
+    /**
+     * Adds an edge (source -> target) with given type filter to this PFG.
+     * If the edge already exists with other filters, given filter is added
+     * to them, so that the edge lets through the objects of each filter.
+     * Adding the edge without filter removes all its filters.
+     *
+     * @return true if this PFG changed as a result of the call,
+     * otherwise false.
+     */
+    boolean addEdge(Pointer source, Pointer target, @Nullable Type filter) {
+        int sourceRep = find(source.getIndex());
+        int targetRep = find(target.getIndex());
+        return sourceRep != targetRep && addEdge(sourceRep, targetRep,
+                filter == null ? null : Set.of(filter));
+    }
+
+    private boolean addEdge(int source, int target, @Nullable Set<Type> filters) {
+        long edge = pack(source, target);
+        if (!edges.containsKey(edge)) {
+            edges.put(edge, filters);
+            int count = succCounts[source];
+            int[] targets = succs[source];
+            if (targets == null) {
+                targets = succs[source] = new int[2];
+            } else if (count == targets.length) {
+                targets = succs[source] = Arrays.copyOf(targets, count * 2);
+            }
+            targets[count] = target;
+            succCounts[source] = count + 1;
+            return true;
+        }
+        Set<Type> oldFilters = edges.get(edge);
+        if (oldFilters == null ||
+                (filters != null && oldFilters.containsAll(filters))) {
+            return false;
+        }
+        Set<Type> newFilters = null;
+        if (filters != null) {
+            newFilters = Sets.newHybridSet(oldFilters);
+            newFilters.addAll(filters);
+        }
+        edges.put(edge, newFilters);
+        return true;
     }
 
     /**
-     * @return successors of given pointer in the PFG.
+     * @return the type filters of edge (source -> target), or null if
+     * the edge has no filter. The source should be a representative and
+     * the target should be one of its successors by {@link #getSuccsOf}.
+     */
+    @Nullable
+    Set<Type> getFilters(Pointer source, Pointer target) {
+        return edges.get(pack(source.getIndex(), target.getIndex()));
+    }
+
+    /**
+     * @return successors of given pointer in the PFG. The successors
+     * may have been collapsed since the edges were added, so callers
+     * should look up their representatives by {@link #getRep(Pointer)}.
      */
     Set<Pointer> getSuccsOf(Pointer pointer) {
-        return successors.get(pointer);
+        return new Successors(find(pointer.getIndex()));
+    }
+
+    /**
+     * @return the representative of the collapsed cycle that contains
+     * given pointer, or the pointer itself if it is not collapsed.
+     */
+    Pointer getRep(Pointer pointer) {
+        return pointers.get(find(pointer.getIndex()));
+    }
+
+    private int find(int index) {
+        int rep = index;
+        while (parents[rep] != rep) {
+            rep = parents[rep];
+        }
+        // path compression
+        while (index != rep) {
+            int next = parents[index];
+            parents[index] = rep;
+            index = next;
+        }
+        return rep;
+    }
+
+    /**
+     * @return the pointers (other than the representative itself)
+     * that have been collapsed into given representative.
+     */
+    Set<Pointer> getMembersOf(Pointer rep) {
+        return members.get(rep);
+    }
+
+    /**
+     * Finds the cycle that contains given representative, i.e., the
+     * strongly connected component of the PFG that contains it.
+     * Edges with type filters are ignored, so that all pointers in
+     * the cycle can share the same points-to set.
+     *
+     * @return the representatives in the cycle, or an empty set if
+     * the pointer is not in any cycle.
+     */
+    Set<Pointer> findCycle(Pointer start) {
+        for (Set<Pointer> cycle : findCycles(List.of(start))) {
+            if (cycle.contains(start)) {
+                return cycle;
+            }
+        }
+        return Set.of();
+    }
+
+    /**
+     * Finds all cycles that are reachable from given representatives.
+     * Edges with type filters are ignored as in {@link #findCycle(Pointer)}.
+     *
+     * @return the cycles, each of which consists of representatives.
+     */
+    List<Set<Pointer>> findCycles(Collection<Pointer> starts) {
+        // iterative Tarjan's algorithm
+        List<Set<Pointer>> cycles = new ArrayList<>();
+        Map<Pointer, Integer> indexes = Maps.newMap();
+        Map<Pointer, Integer> lowLinks = Maps.newMap();
+        Deque<Pointer> stack = new ArrayDeque<>();
+        Set<Pointer> onStack = Sets.newSet();
+        Deque<Frame> frames = new ArrayDeque<>();
+        Consumer<Pointer> visit = p -> {
+            int index = indexes.size();
+            indexes.put(p, index);
+            lowLinks.put(p, index);
+            stack.push(p);
+            onStack.add(p);
+            frames.push(new Frame(p, getSuccsOf(p).iterator()));
+        };
+        for (Pointer start : starts) {
+            if (indexes.containsKey(start)) {
+                continue;
+            }
+            visit.accept(start);
+            while (!frames.isEmpty()) {
+                Frame frame = frames.peek();
+                if (frame.succs().hasNext()) {
+                    Pointer next = frame.succs().next();
+                    if (getFilters(frame.pointer(), next) != null) {
+                        continue;
+                    }
+                    Pointer succ = getRep(next);
+                    if (!indexes.containsKey(succ)) {
+                        visit.accept(succ);
+                    } else if (onStack.contains(succ)) {
+                        lowLinks.merge(frame.pointer(), indexes.get(succ), Math::min);
+                    }
+                } else {
+                    frames.pop();
+                    Pointer pointer = frame.pointer();
+                    if (!frames.isEmpty()) {
+                        lowLinks.merge(frames.peek().pointer(),
+                                lowLinks.get(pointer), Math::min);
+                    }
+                    if (lowLinks.get(pointer).equals(indexes.get(pointer))) {
+                        Set<Pointer> scc = Sets.newSet();
+                        Pointer p;
+                        do {
+                            p = stack.pop();
+                            onStack.remove(p);
+                            scc.add(p);
+                        } while (p != pointer);
+                        if (scc.size() > 1) {
+                            cycles.add(scc);
+                        }
+                    }
+                }
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * Collapses the given representatives into one node. The successors
+     * and members of all collapsed pointers are moved to the new
+     * representative.
+     *
+     * @return the representative of the collapsed cycle.
+     */
+    Pointer collapse(Set<Pointer> cycle) {
+        int rep = -1;
+        for (Pointer p : cycle) {
+            int index = p.getIndex();
+            if (rep == -1 || succCounts[index] > succCounts[rep]) {
+                rep = index;
+            }
+        }
+        Pointer repPointer = pointers.get(rep);
+        for (Pointer p : cycle) {
+            int index = p.getIndex();
+            if (index != rep) {
+                parents[index] = rep;
+                members.put(repPointer, p);
+                members.putAll(repPointer, members.get(p));
+                members.removeAll(p);
+                for (int i = 0; i < succCounts[index]; ++i) {
+                    int succ = succs[index][i];
+                    long edge = pack(index, succ);
+                    int succRep = find(succ);
+                    if (succRep != rep) {
+                        addEdge(rep, succRep, edges.get(edge));
+                    }
+                    edges.remove(edge);
+                }
+                succs[index] = null;
+                succCounts[index] = 0;
+            }
+        }
+        // removes the edges from the representative to the cycle
+        int[] targets = succs[rep];
+        int count = 0;
+        for (int i = 0; i < succCounts[rep]; ++i) {
+            int succ = targets[i];
+            if (cycle.contains(pointers.get(succ))) {
+                edges.remove(pack(rep, succ));
+            } else {
+                targets[count++] = succ;
+            }
+        }
+        succCounts[rep] = count;
+        return repPointer;
+    }
+
+    /**
+     * Packs two indexes into a long key.
+     */
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | low;
+    }
+
+    /**
+     * View of the successors of a representative.
+     */
+    private class Successors extends AbstractSet<Pointer> {
+
+        private final int source;
+
+        private Successors(int source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Pointer p && p.getIndex() >= 0
+                    && edges.containsKey(pack(source, p.getIndex()));
+        }
+
+        @Override
+        public Iterator<Pointer> iterator() {
+            return new Iterator<>() {
+
+                private final int[] targets = succs[source];
+
+                private final int count = succCounts[source];
+
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < count;
+                }
+
+                @Override
+                public Pointer next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return pointers.get(targets[next++]);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return succCounts[source];
+        }
+    }
+
+    private record Frame(Pointer pointer, Iterator<Pointer> succs) {
     }
 }
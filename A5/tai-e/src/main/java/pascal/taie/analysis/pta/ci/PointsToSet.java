@@ -23,33 +23,45 @@
 package pascal.taie.analysis.pta.ci;
 
 import pascal.taie.analysis.pta.core.heap.Obj;
-import pascal.taie.util.collection.Sets;
+import pascal.taie.analysis.pta.core.heap.ObjIndexer;
+import pascal.taie.util.collection.SparseBitSet;
 
-import java.util.Collections;
+import java.util.AbstractSet;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.stream.Stream;
 
 /**
  * Represents of points-to sets.
+ * <p>
+ * Objects are stored as a bit set over their global indexes
+ * (see {@link ObjIndexer}), so that set operations do not need to
+ * hash the objects.
  */
 class PointsToSet implements Iterable<Obj> {
 
-    private final Set<Obj> set = Sets.newHybridSet();
+    private final SparseBitSet set;
 
     /**
      * Constructs an empty points-to set.
      */
     PointsToSet() {
+        this(new SparseBitSet());
     }
 
     /**
      * Constructs a points-to set containing one object.
      */
     PointsToSet(Obj obj) {
+        this();
         addObject(obj);
     }
 
+    private PointsToSet(SparseBitSet set) {
+        this.set = set;
+    }
+
     /**
      * Adds an object to this set.
      *
@@ -57,14 +69,34 @@ class PointsToSet implements Iterable<Obj> {
      * otherwise false.
      */
     boolean addObject(Obj obj) {
-        return set.add(obj);
+        return set.set(ObjIndexer.getIndex(obj));
+    }
+
+    /**
+     * Adds all objects in given pts to this set.
+     *
+     * @return true if this points-to set changed as a result of the call,
+     * otherwise false.
+     */
+    boolean addAll(PointsToSet pts) {
+        return set.addAll(pts.set);
+    }
+
+    /**
+     * Adds all objects in given pts to this set.
+     *
+     * @return the objects that are in given pts but were not
+     * in this set before the call.
+     */
+    PointsToSet addAllDiff(PointsToSet pts) {
+        return new PointsToSet(set.addAllDiff(pts.set));
     }
 
     /**
      * @return true if this points-to set contains the given object, otherwise false.
      */
     boolean contains(Obj obj) {
-        return set.contains(obj);
+        return set.get(ObjIndexer.indexOf(obj));
     }
 
     /**
@@ -78,30 +110,74 @@ class PointsToSet implements Iterable<Obj> {
      * @return the number of objects in this set.
      */
     int size() {
-        return set.size();
+        return set.cardinality();
     }
 
     /**
      * @return all objects in this set.
      */
     Stream<Obj> objects() {
-        return set.stream();
+        return getObjects().stream();
     }
 
     /**
      * @return all objects in this set.
      */
     Set<Obj> getObjects() {
-        return Collections.unmodifiableSet(set);
+        return new AbstractSet<>() {
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Obj obj && PointsToSet.this.contains(obj);
+            }
+
+            @Override
+            public Iterator<Obj> iterator() {
+                return PointsToSet.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return PointsToSet.this.size();
+            }
+        };
     }
 
     @Override
     public Iterator<Obj> iterator() {
-        return set.iterator();
+        PrimitiveIterator.OfInt it = set.iterator();
+        return new Iterator<>() {
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Obj next() {
+                return ObjIndexer.getObj(it.nextInt());
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PointsToSet that)) {
+            return false;
+        }
+        return set.equals(that.set);
+    }
+
+    @Override
+    public int hashCode() {
+        return set.hashCode();
     }
 
     @Override
     public String toString() {
-        return set.toString();
+        return getObjects().toString();
     }
 }
@@ -26,6 +26,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import pascal.taie.World;
 import pascal.taie.analysis.graph.callgraph.*;
+import pascal.taie.analysis.pta.core.DispatchCache;
+import pascal.taie.analysis.pta.core.SubtypeCache;
 import pascal.taie.analysis.pta.core.heap.HeapModel;
 import pascal.taie.analysis.pta.core.heap.Obj;
 import pascal.taie.ir.IR;
@@ -38,9 +40,12 @@ import pascal.taie.language.classes.JField;
 import pascal.taie.language.classes.JMethod;
 import pascal.taie.util.AnalysisException;
 import pascal.taie.language.type.Type;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.Sets;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 class Solver {
 
@@ -50,11 +55,18 @@ class Solver {
 
     private DefaultCallGraph callGraph;
 
-    private PointerFlowGraph pointerFlowGraph;
+    protected PointerFlowGraph pointerFlowGraph;
 
-    private WorkList workList;
+    protected WorkList workList;
 
-    private StmtProcessor stmtProcessor;
+    /**
+     * PFG edges that have triggered cycle detection.
+     */
+    private MultiMap<Pointer, Pointer> checkedEdges;
+
+    protected SubtypeCache subtypeCache;
+
+    private DispatchCache dispatchCache;
 
     private ClassHierarchy hierarchy;
 
@@ -68,6 +80,7 @@ class Solver {
     void solve() {
         initialize();
         analyze();
+        logger.info("{}", dispatchCache);
     }
 
     /**
@@ -75,9 +88,11 @@ class Solver {
      */
     private void initialize() {
         workList = new WorkList();
+        checkedEdges = Maps.newMultiMap();
+        subtypeCache = new SubtypeCache(World.get().getTypeSystem());
+        dispatchCache = new DispatchCache();
         pointerFlowGraph = new PointerFlowGraph();
         callGraph = new DefaultCallGraph();
-        stmtProcessor = new StmtProcessor();
         hierarchy = World.get().getClassHierarchy();
         // initialize main method
         JMethod main = World.get().getMainMethod();
@@ -89,205 +104,321 @@ class Solver {
      * Processes new reachable method.
      */
     private void addReachable(JMethod method) {
-        // TODO - finish me
         if(callGraph.addReachableMethod(method))
         {
-            for(Stmt stmt: method.getIR().getStmts())
-            {
-                stmt.accept(stmtProcessor);
-            }
+            MethodTemplate template = MethodTemplate.build(method,heapModel);
+            substituteVars(template);
+            instantiate(template);
         }
 
     }
 
     /**
-     * Processes statements in new reachable methods.
+     * Collapses the pointer-equivalent variables of a method,
+     * which are found by {@link VarSubstitution}.
      */
-    private class StmtProcessor implements StmtVisitor<Void> {
-        // TODO - if you choose to implement addReachable()
-        //  via visitor pattern, then finish me
-        private List<Stmt> S=new ArrayList<>();
-//        private List<JMethod> RM=new ArrayList<>();
-        public Void visit(New stmt) {
-
-
-            Var x = stmt.getLValue();
-            workList.addEntry(pointerFlowGraph.getVarPtr(x),new PointsToSet(heapModel.getObj(stmt)));
-
-            return visitDefault(stmt);
-        }
-        public Void visit(Copy stmt)
+    private void substituteVars(MethodTemplate template) {
+        for(List<Var> vars:template.getEquivalentVars())
         {
-            Var x = stmt.getLValue();
-            Var y = stmt.getRValue();
-            addPFGEdge(pointerFlowGraph.getVarPtr(y),pointerFlowGraph.getVarPtr(x));
-            return visitDefault(stmt);
+            Set<Pointer> pointers = Sets.newSet();
+            for(Var var:vars)
+            {
+                pointers.add(pointerFlowGraph.getRep(pointerFlowGraph.getVarPtr(var)));
+            }
+            if(pointers.size()>1)
+            {
+                collapse(pointers);
+            }
         }
-        public Void visit(LoadField stmt)
+    }
+
+    /**
+     * Adds the objects, PFG edges and static calls of a method in bulk.
+     */
+    private void instantiate(MethodTemplate template) {
+        // x = new T()
+        template.getObjects().forEach((x,objs)->
         {
-            JField T_f = stmt.getFieldRef().resolve();
-            if(T_f.isStatic())
+            PointsToSet pointsToSet = new PointsToSet();
+            for(Obj obj:objs)
             {
-                Var y = stmt.getLValue();
-                addPFGEdge(pointerFlowGraph.getStaticField(T_f),pointerFlowGraph.getVarPtr(y));
+                pointsToSet.addObject(obj);
             }
-            return visitDefault(stmt);
-        }
-        public Void visit(StoreField stmt)
+            workList.addEntry(pointerFlowGraph.getVarPtr(x),pointsToSet);
+        });
+        // x = y, x = (T) y
+        for(MethodTemplate.Assign assign:template.getAssigns())
         {
-            JField T_f = stmt.getFieldRef().resolve();
-            if(T_f.isStatic())
+            VarPtr y = pointerFlowGraph.getVarPtr(assign.source());
+            VarPtr x = pointerFlowGraph.getVarPtr(assign.target());
+            if(assign.castType()!=null)
             {
-                Var y = stmt.getRValue();
-                addPFGEdge(pointerFlowGraph.getVarPtr(y),pointerFlowGraph.getStaticField(T_f));
+                addPFGEdge(y,x,assign.castType());
+            }
+            else
+            {
+                addPFGEdge(y,x);
             }
-            return visitDefault(stmt);
         }
-        public Void visit(Invoke stmt)
+        // y = T.f
+        for(MethodTemplate.StaticLoad load:template.getStaticLoads())
         {
+            addPFGEdge(pointerFlowGraph.getStaticField(load.field()),pointerFlowGraph.getVarPtr(load.target()));
+        }
+        // T.f = y
+        for(MethodTemplate.StaticStore store:template.getStaticStores())
+        {
+            addPFGEdge(pointerFlowGraph.getVarPtr(store.source()),pointerFlowGraph.getStaticField(store.field()));
+        }
+        // r = T.m(...)
+        for(MethodTemplate.StaticCall call:template.getStaticCalls())
+        {
+            processStaticCall(call.callSite(),call.callee());
+        }
+    }
 
+    /**
+     * Processes a static call with the resolved callee.
+     */
+    private void processStaticCall(Invoke stmt, JMethod method) {
+        Var r = stmt.getResult();
+        if(callGraph.addEdge(new Edge<>(CallKind.STATIC,stmt,method)))
+        {
+            addReachable(method);
+            int argCount = stmt.getInvokeExp().getArgCount();
 
-            if(stmt.isStatic())
+            IR ir = method.getIR();
+            for(int index=0;index<argCount;index++)
             {
-                JMethod method = resolveCallee(null,stmt);
-                Var r = stmt.getResult();
-                if(callGraph.addEdge(new Edge<>(CallKind.STATIC,stmt,method)))
-                {
-                    addReachable(method);
-                    int argCount = stmt.getInvokeExp().getArgCount();
-
-                    IR ir = method.getIR();
-                    for(int index=0;index<argCount;index++)
-                    {
-                        Var arg = stmt.getInvokeExp().getArg(index);
-                        Var par = ir.getParam(index);
-                        addPFGEdge(pointerFlowGraph.getVarPtr(arg),pointerFlowGraph.getVarPtr(par));
+                Var arg = stmt.getInvokeExp().getArg(index);
+                Var par = ir.getParam(index);
+                addPFGEdge(pointerFlowGraph.getVarPtr(arg),pointerFlowGraph.getVarPtr(par));
 
 
-                    }
-                    if(r!=null)
-                    {
-                        VarPtr varPtr = pointerFlowGraph.getVarPtr(r);
-                        for(Var ret: ir.getReturnVars())
-                        {
-                            addPFGEdge(pointerFlowGraph.getVarPtr(ret), varPtr);
-                        }
-                    }
-
+            }
+            if(r!=null)
+            {
+                VarPtr varPtr = pointerFlowGraph.getVarPtr(r);
+                for(Var ret: ir.getReturnVars())
+                {
+                    addPFGEdge(pointerFlowGraph.getVarPtr(ret), varPtr);
                 }
-
-
             }
-            return visitDefault(stmt);
-        }
-        public Void visitDefault(Stmt stmt)
-        {
-            S.add(stmt);
-            return null;
-        }
-
 
+        }
     }
 
     /**
      * Adds an edge "source -> target" to the PFG.
      */
     private void addPFGEdge(Pointer source, Pointer target) {
-        // TODO - finish me
-        if(pointerFlowGraph.addEdge(source, target))
+        // objects flowing to a variable must conform to its declared type
+        Type filter = null;
+        if(target instanceof VarPtr && !subtypeCache.isSubtype(target.getType(),source.getType()))
+        {
+            filter = target.getType();
+        }
+        addPFGEdge(source,target,filter);
+    }
+
+    /**
+     * Adds an edge "source -> target" with given type filter to the PFG.
+     */
+    private void addPFGEdge(Pointer source, Pointer target, Type filter) {
+        if(pointerFlowGraph.addEdge(source,target,filter))
         {
             PointsToSet pointsToSet = source.getPointsToSet();
             if(!pointsToSet.isEmpty())
             {
-                workList.addEntry(target,pointsToSet);
+                propagateAlong(pointerFlowGraph.getRep(source),pointerFlowGraph.getRep(target),pointsToSet);
+            }
+        }
+    }
+
+    /**
+     * Adds the objects in pointsToSet that can pass through the PFG edge
+     * "source -> target" to the work list.
+     */
+    private void propagateAlong(Pointer source, Pointer target, PointsToSet pointsToSet) {
+        Set<Type> filters = pointerFlowGraph.getFilters(source,target);
+        PointsToSet filtered = filters==null ? pointsToSet : filterByTypes(pointsToSet,filters);
+        if(!filtered.isEmpty())
+        {
+            workList.addEntry(pointerFlowGraph.getRep(target),filtered);
+        }
+    }
+
+    /**
+     * @return the objects in pointsToSet whose types are subtypes of
+     * any of given types.
+     */
+    protected PointsToSet filterByTypes(PointsToSet pointsToSet, Set<Type> types) {
+        PointsToSet filtered = new PointsToSet();
+        for(Obj obj:pointsToSet)
+        {
+            for(Type type:types)
+            {
+                if(subtypeCache.isSubtype(type,obj.getType()))
+                {
+                    filtered.addObject(obj);
+                    break;
+                }
             }
         }
+        return filtered;
     }
 
     /**
      * Processes work-list entries until the work-list is empty.
      */
-    private void analyze() {
-        // TODO - finish me
+    protected void analyze() {
         while(!workList.isEmpty())
         {
             WorkList.Entry entry = workList.pollEntry();
-            Pointer n = entry.pointer();
+            Pointer n = pointerFlowGraph.getRep(entry.pointer());
             PointsToSet pts = entry.pointsToSet();
             PointsToSet delta = propagate(n,pts);
-            if(n instanceof VarPtr varPtr)
+            if(!delta.isEmpty())
             {
-                Var x = varPtr.getVar();
-                for(Obj o:delta)
-                {
-                    for(StoreField f:x.getStoreFields())
-                    {
-                        if(!f.isStatic())
-                        {
-                            VarPtr y = pointerFlowGraph.getVarPtr(f.getRValue());
-                            JField field = f.getFieldRef().resolve();
-                            InstanceField o_f = pointerFlowGraph.getInstanceField(o, field);
-                            addPFGEdge(y, o_f);
-                        }
+                processDelta(n,delta);
+                detectCycle(n);
+            }
+        }
+    }
 
-                    }
-                    for(LoadField f:x.getLoadFields())
-                    {
-                        if(!f.isStatic())
-                        {
-                            VarPtr y = pointerFlowGraph.getVarPtr(f.getLValue());
-                            JField field = f.getFieldRef().resolve();
-                            InstanceField o_f = pointerFlowGraph.getInstanceField(o, field);
-                            addPFGEdge(o_f, y);
-                        }
+    /**
+     * Processes the new objects of given pointer and of all pointers
+     * collapsed into it.
+     */
+    protected void processDelta(Pointer pointer, PointsToSet delta) {
+        if(pointer instanceof VarPtr varPtr)
+        {
+            processVar(varPtr.getVar(),delta);
+        }
+        for(Pointer member:pointerFlowGraph.getMembersOf(pointer))
+        {
+            if(member instanceof VarPtr varPtr)
+            {
+                processVar(varPtr.getVar(),delta);
+            }
+        }
+    }
 
-                    }
+    /**
+     * Processes the instance field/array accesses and instance calls
+     * on given variable for its new objects.
+     */
+    private void processVar(Var x, PointsToSet delta) {
+        for(Obj o:delta)
+        {
+            for(StoreField f:x.getStoreFields())
+            {
+                if(!f.isStatic())
+                {
+                    VarPtr y = pointerFlowGraph.getVarPtr(f.getRValue());
+                    JField field = f.getFieldRef().resolve();
+                    InstanceField o_f = pointerFlowGraph.getInstanceField(o, field);
+                    addPFGEdge(y, o_f);
+                }
 
+            }
+            for(LoadField f:x.getLoadFields())
+            {
+                if(!f.isStatic())
+                {
+                    VarPtr y = pointerFlowGraph.getVarPtr(f.getLValue());
+                    JField field = f.getFieldRef().resolve();
+                    InstanceField o_f = pointerFlowGraph.getInstanceField(o, field);
+                    addPFGEdge(o_f, y);
+                }
 
-                    // x[] = y
-                    for (StoreArray storeArray : x.getStoreArrays()) {
-                        VarPtr source = pointerFlowGraph.getVarPtr(storeArray.getRValue());
-                        ArrayIndex target = pointerFlowGraph.getArrayIndex(o);
-                        addPFGEdge(source, target);
-                    }
-                    for (LoadArray loadArray : x.getLoadArrays()) {
-                        VarPtr source = pointerFlowGraph.getVarPtr(loadArray.getLValue());
-                        ArrayIndex target = pointerFlowGraph.getArrayIndex(o);
-                        addPFGEdge(target, source);
-                    }
+            }
 
-                    processCall(x,o);
-                }
+
+            // x[] = y
+            for (StoreArray storeArray : x.getStoreArrays()) {
+                VarPtr source = pointerFlowGraph.getVarPtr(storeArray.getRValue());
+                ArrayIndex target = pointerFlowGraph.getArrayIndex(o);
+                addPFGEdge(source, target);
+            }
+            for (LoadArray loadArray : x.getLoadArrays()) {
+                VarPtr source = pointerFlowGraph.getVarPtr(loadArray.getLValue());
+                ArrayIndex target = pointerFlowGraph.getArrayIndex(o);
+                addPFGEdge(target, source);
             }
+
+            processCall(x,o);
         }
     }
 
     /**
-     * Propagates pointsToSet to pt(pointer) and its PFG successors,
-     * returns the difference set of pointsToSet and pt(pointer).
+     * Lazy cycle detection. If a successor of the pointer already has
+     * the same points-to set as the pointer, propagation along the edge
+     * brings nothing new, which hints that both are in a cycle. Each
+     * edge triggers the detection at most once.
      */
-    private PointsToSet propagate(Pointer pointer, PointsToSet pointsToSet) {
-        // TODO - finish me
-        PointsToSet difference = new PointsToSet();
-        if(!pointsToSet.isEmpty())
+    private void detectCycle(Pointer pointer) {
+        PointsToSet pts = pointer.getPointsToSet();
+        for(Pointer s:pointerFlowGraph.getSuccsOf(pointer))
         {
-
-            PointsToSet ptn = pointer.getPointsToSet();
-            for(Obj obj:pointsToSet)
+            Pointer succ = pointerFlowGraph.getRep(s);
+            if(succ!=pointer && pts.equals(succ.getPointsToSet())
+                    && checkedEdges.put(pointer,succ))
             {
-                if(!ptn.contains(obj))
+                Set<Pointer> cycle = pointerFlowGraph.findCycle(pointer);
+                if(!cycle.isEmpty())
                 {
-                    difference.addObject(obj);
-                    ptn.addObject(obj);
+                    collapse(cycle);
+                    logger.debug("Collapsed a PFG cycle of {} pointers", cycle.size());
                 }
+                return;
+            }
+        }
+    }
 
-
-
+    /**
+     * Collapses pointer-equivalent pointers (e.g., the pointers in a cycle)
+     * into one representative, which shares the union of their points-to sets.
+     */
+    protected void collapse(Set<Pointer> pointers) {
+        PointsToSet union = new PointsToSet();
+        for(Pointer p:pointers)
+        {
+            union.addAll(p.getPointsToSet());
+        }
+        // the pointers (and the pointers collapsed into them)
+        // may miss some objects in the union, process them before collapsing
+        for(Pointer p:pointers)
+        {
+            PointsToSet diff = p.getPointsToSet().addAllDiff(union);
+            if(!diff.isEmpty())
+            {
+                processDelta(p,diff);
             }
+        }
+        Pointer rep = pointerFlowGraph.collapse(pointers);
+        rep.setPointsToSet(union);
+        for(Pointer member:pointerFlowGraph.getMembersOf(rep))
+        {
+            member.setPointsToSet(union);
+        }
+        for(Pointer s:pointerFlowGraph.getSuccsOf(rep))
+        {
+            propagateAlong(rep,s,union);
+        }
+    }
 
+    /**
+     * Propagates pointsToSet to pt(pointer) and its PFG successors,
+     * returns the difference set of pointsToSet and pt(pointer).
+     */
+    private PointsToSet propagate(Pointer pointer, PointsToSet pointsToSet) {
+        PointsToSet difference = pointer.getPointsToSet().addAllDiff(pointsToSet);
+        if(!difference.isEmpty())
+        {
             for(Pointer s:pointerFlowGraph.getSuccsOf(pointer))
             {
-                workList.addEntry(s,difference);
+                propagateAlong(pointer,s,difference);
             }
         }
         return difference;
@@ -300,12 +431,18 @@ class Solver {
      * @param recv a new discovered object pointed by the variable.
      */
     private void processCall(Var var, Obj recv) {
-        // TODO - finish me
         for(Invoke invoke: var.getInvokes())
         {
             if(!invoke.isStatic())
             {
-                JMethod m = resolveCallee(recv,invoke);
+                JMethod m = dispatchCache.getCallee(invoke,recv.getType());
+                if(m!=null)
+                {
+                    // the call edge of this receiver type has been processed
+                    workList.addEntry(pointerFlowGraph.getVarPtr(m.getIR().getThis()),new PointsToSet(recv));
+                    continue;
+                }
+                m = resolveCallee(recv,invoke);
                 Var r = invoke.getResult();
                 IR ir = m.getIR();
 //                if(r!=null){
@@ -350,8 +487,10 @@ class Solver {
      * @return the resolved callee.
      */
     private JMethod resolveCallee(Obj recv, Invoke callSite) {
-        Type type = recv != null ? recv.getType() : null;
-        return CallGraphs.resolveCallee(type, callSite);
+        if (recv == null) {
+            return CallGraphs.resolveCallee(null, callSite);
+        }
+        return dispatchCache.resolveCallee(callSite, recv.getType());
     }
 
     CIPTAResult getResult() {
@@ -0,0 +1,127 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.ci;
+
+import pascal.taie.World;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.LValue;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Copy;
+import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.language.type.ReferenceType;
+import pascal.taie.language.type.TypeSystem;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.SparseBitSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offline variable substitution, which finds pointer-equivalent variables
+ * of a method before its statements are added to the pointer analysis.
+ * <p>
+ * This is a hash-based value numbering in the style of HU: each variable
+ * that receives objects from outside the copy statements of the method
+ * (parameters, this variable, and results of other definition statements)
+ * gets a unique label, and labels are propagated along copy statements.
+ * Variables with the same set of labels always point to the same objects,
+ * so the solver can represent them by one pointer.
+ * <p>
+ * A copy whose source type is not a subtype of its target type is turned
+ * into a PFG edge with a type filter by the solver, so its target may
+ * receive only part of the objects of its source. Such copies are treated
+ * as other definition statements, i.e., their targets get unique labels.
+ */
+class VarSubstitution {
+
+    private VarSubstitution() {
+    }
+
+    /**
+     * @return the classes of pointer-equivalent variables in given IR.
+     * Each class contains at least two variables.
+     */
+    static Collection<List<Var>> getEquivalentVars(IR ir) {
+        Map<Var, SparseBitSet> labels = Maps.newMap();
+        int label = 0;
+        if (ir.getThis() != null) {
+            getLabels(labels, ir.getThis()).set(label++);
+        }
+        for (Var param : ir.getParams()) {
+            getLabels(labels, param).set(label++);
+        }
+        TypeSystem typeSystem = World.get().getTypeSystem();
+        List<Copy> copies = new ArrayList<>();
+        for (Stmt stmt : ir) {
+            if (stmt instanceof Copy copy && !isFiltered(copy, typeSystem)) {
+                copies.add(copy);
+            } else {
+                LValue def = stmt.getDef().orElse(null);
+                if (def instanceof Var var) {
+                    getLabels(labels, var).set(label++);
+                }
+            }
+        }
+        // propagate labels along copy statements until reaching fixed point
+        boolean changed;
+        do {
+            changed = false;
+            for (Copy copy : copies) {
+                SparseBitSet from = labels.get(copy.getRValue());
+                if (from != null &&
+                        getLabels(labels, copy.getLValue()).addAll(from)) {
+                    changed = true;
+                }
+            }
+        } while (changed);
+        // group variables by their labels
+        Map<SparseBitSet, List<Var>> classes = Maps.newMap();
+        labels.forEach((var, varLabels) -> {
+            if (!varLabels.isEmpty() &&
+                    var.getType() instanceof ReferenceType) {
+                classes.computeIfAbsent(varLabels, unused -> new ArrayList<>())
+                        .add(var);
+            }
+        });
+        classes.values().removeIf(vars -> vars.size() < 2);
+        return classes.values();
+    }
+
+    /**
+     * @return true if the solver filters the objects flowing through
+     * given copy statement by the type of its target.
+     */
+    private static boolean isFiltered(Copy copy, TypeSystem typeSystem) {
+        Var target = copy.getLValue();
+        Var source = copy.getRValue();
+        return target.getType() instanceof ReferenceType &&
+                !typeSystem.isSubtype(target.getType(), source.getType());
+    }
+
+    private static SparseBitSet getLabels(Map<Var, SparseBitSet> labels, Var var) {
+        return labels.computeIfAbsent(var, unused -> new SparseBitSet());
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.ci;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.analysis.pta.core.heap.HeapModel;
+import pascal.taie.language.type.Type;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Wave propagation solver, which propagates points-to sets in parallel.
+ * <p>
+ * Each wave consists of the following phases:
+ * <ol>
+ *     <li>collapse the cycles of the PFG that are reachable from
+ *     the pointers with pending objects;</li>
+ *     <li>sort the reachable part of the PFG topologically and divide it
+ *     into levels, so that no edge connects two pointers of the same
+ *     level, except back edges that form cycles through type filters;</li>
+ *     <li>propagate the pending objects level by level, processing the
+ *     pointers of each level in parallel;</li>
+ *     <li>process the new objects of variables sequentially, which adds
+ *     new PFG edges and reachable methods.</li>
+ * </ol>
+ * The waves repeat until no objects are pending. Objects propagated
+ * along back edges are pending for the next wave.
+ */
+class WaveSolver extends Solver {
+
+    private static final Logger logger = LogManager.getLogger(WaveSolver.class);
+
+    private final int parallelism;
+
+    WaveSolver(HeapModel heapModel, int parallelism) {
+        super(heapModel);
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    protected void analyze() {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            int waves = 0;
+            while (!workList.isEmpty()) {
+                ++waves;
+                Map<Pointer, PointsToSet> pending = Maps.newMap();
+                drainWorkList(pending);
+                for (Set<Pointer> cycle : pointerFlowGraph.findCycles(
+                        List.copyOf(pending.keySet()))) {
+                    collapse(cycle);
+                }
+                // collapsing changes representatives and may add new entries
+                Map<Pointer, PointsToSet> repPending = Maps.newMap();
+                pending.forEach((pointer, pts) -> merge(repPending,
+                        pointerFlowGraph.getRep(pointer), pts));
+                drainWorkList(repPending);
+                Map<Pointer, PointsToSet> deltas = propagateWave(pool, repPending);
+                repPending.forEach(workList::addEntry);
+                deltas.forEach(this::processDelta);
+            }
+            logger.info("Wave propagation finished in {} waves", waves);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Moves all entries of the work list to given map, which maps
+     * representatives to their pending objects.
+     */
+    private void drainWorkList(Map<Pointer, PointsToSet> pending) {
+        while (!workList.isEmpty()) {
+            WorkList.Entry entry = workList.pollEntry();
+            merge(pending, pointerFlowGraph.getRep(entry.pointer()),
+                    entry.pointsToSet());
+        }
+    }
+
+    private static void merge(Map<Pointer, PointsToSet> pending,
+                              Pointer pointer, PointsToSet pts) {
+        PointsToSet old = pending.putIfAbsent(pointer, pts);
+        if (old != null) {
+            old.addAll(pts);
+        }
+    }
+
+    /**
+     * Propagates the pending objects through the part of the PFG
+     * reachable from the pending pointers.
+     *
+     * @param pending the pending objects of each representative. When this
+     *                method returns, it contains the objects propagated
+     *                along back edges, which are left for the next wave.
+     * @return the new objects of each representative in this wave.
+     */
+    private Map<Pointer, PointsToSet> propagateWave(
+            ForkJoinPool pool, Map<Pointer, PointsToSet> pending) {
+        // the graph is not modified during propagation, so take a snapshot
+        // of the representatives' edges, which is safe to read in parallel
+        Map<Pointer, List<Edge>> edges = Maps.newMap();
+        List<Pointer> order = sortTopologically(pending.keySet(), edges);
+        List<List<Pointer>> levels = divideLevels(order, edges);
+        ConcurrentMap<Pointer, PointsToSet> concurrentPending =
+                Maps.newConcurrentMap();
+        concurrentPending.putAll(pending);
+        ConcurrentMap<Pointer, PointsToSet> deltas = Maps.newConcurrentMap();
+        for (List<Pointer> level : levels) {
+            pool.submit(() -> level.parallelStream().forEach(pointer ->
+                    propagatePointer(pointer, edges.get(pointer),
+                            concurrentPending, deltas))
+            ).join();
+        }
+        pending.clear();
+        pending.putAll(concurrentPending);
+        return deltas;
+    }
+
+    /**
+     * Adds the pending objects of a pointer to its points-to set, and
+     * propagates the new objects to the pending objects of its successors.
+     * Only the worker processing the pointer modifies its points-to set.
+     */
+    private void propagatePointer(Pointer pointer, List<Edge> edges,
+                                  ConcurrentMap<Pointer, PointsToSet> pending,
+                                  ConcurrentMap<Pointer, PointsToSet> deltas) {
+        PointsToSet pts = pending.remove(pointer);
+        if (pts == null) {
+            return;
+        }
+        PointsToSet delta = pointer.getPointsToSet().addAllDiff(pts);
+        if (delta.isEmpty()) {
+            return;
+        }
+        deltas.put(pointer, delta);
+        for (Edge edge : edges) {
+            PointsToSet filtered = edge.filters() == null ? delta
+                    : filterByTypes(delta, edge.filters());
+            if (!filtered.isEmpty()) {
+                pending.compute(edge.target(), (target, old) -> {
+                    PointsToSet result = old != null ? old : new PointsToSet();
+                    result.addAll(filtered);
+                    return result;
+                });
+            }
+        }
+    }
+
+    /**
+     * @return the representatives reachable from the given ones in
+     * topological order (i.e., reverse post-order of depth-first search).
+     * The edges of the visited representatives are stored to {@code edges}.
+     */
+    private List<Pointer> sortTopologically(
+            Set<Pointer> starts, Map<Pointer, List<Edge>> edges) {
+        List<Pointer> postOrder = new ArrayList<>();
+        Set<Pointer> visited = Sets.newSet();
+        Deque<Pointer> stack = new ArrayDeque<>();
+        Deque<Iterator<Edge>> iterators = new ArrayDeque<>();
+        for (Pointer start : starts) {
+            if (!visited.add(start)) {
+                continue;
+            }
+            stack.push(start);
+            iterators.push(getEdges(start, edges).iterator());
+            while (!stack.isEmpty()) {
+                Iterator<Edge> it = iterators.peek();
+                if (it.hasNext()) {
+                    Pointer target = it.next().target();
+                    if (visited.add(target)) {
+                        stack.push(target);
+                        iterators.push(getEdges(target, edges).iterator());
+                    }
+                } else {
+                    postOrder.add(stack.pop());
+                    iterators.pop();
+                }
+            }
+        }
+        Collections.reverse(postOrder);
+        return postOrder;
+    }
+
+    private List<Edge> getEdges(Pointer pointer, Map<Pointer, List<Edge>> edges) {
+        return edges.computeIfAbsent(pointer, p -> {
+            List<Edge> result = new ArrayList<>();
+            for (Pointer succ : pointerFlowGraph.getSuccsOf(p)) {
+                Pointer target = pointerFlowGraph.getRep(succ);
+                if (target != p) {
+                    result.add(new Edge(target,
+                            pointerFlowGraph.getFilters(p, succ)));
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Divides the pointers in topological order into levels. The level of
+     * a pointer is greater than the levels of its predecessors, ignoring
+     * back edges.
+     */
+    private static List<List<Pointer>> divideLevels(
+            List<Pointer> order, Map<Pointer, List<Edge>> edges) {
+        Map<Pointer, Integer> positions = Maps.newMap(order.size());
+        for (int i = 0; i < order.size(); ++i) {
+            positions.put(order.get(i), i);
+        }
+        Map<Pointer, Integer> levelOf = Maps.newMap(order.size());
+        List<List<Pointer>> levels = new ArrayList<>();
+        for (Pointer pointer : order) {
+            int level = levelOf.getOrDefault(pointer, 0);
+            if (level == levels.size()) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(level).add(pointer);
+            int position = positions.get(pointer);
+            for (Edge edge : edges.get(pointer)) {
+                if (positions.get(edge.target()) > position) {
+                    levelOf.merge(edge.target(), level + 1, Math::max);
+                }
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Snapshot of a PFG edge from a representative.
+     */
+    private record Edge(Pointer target, @Nullable Set<Type> filters) {
+    }
+}
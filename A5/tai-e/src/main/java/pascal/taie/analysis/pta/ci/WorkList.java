@@ -22,7 +22,10 @@
 
 package pascal.taie.analysis.pta.ci;
 
+import pascal.taie.util.collection.Maps;
+
 import java.util.ArrayDeque;
+import java.util.Map;
 import java.util.Queue;
 
 /**
@@ -30,13 +33,29 @@ import java.util.Queue;
  */
 class WorkList {
 
-    private final Queue<Entry> entries = new ArrayDeque<>();
+    /**
+     * Pointers that have pending objects, in the order they were added.
+     * Each pointer appears at most once.
+     */
+    private final Queue<Pointer> pointers = new ArrayDeque<>();
+
+    /**
+     * Map from pointer to its pending objects.
+     */
+    private final Map<Pointer, PointsToSet> pendings = Maps.newMap();
 
     /**
-     * Adds an entry to the work list.
+     * Adds an entry to the work list. If the pointer already has
+     * a pending entry, the given objects are merged into it.
      */
     void addEntry(Pointer pointer, PointsToSet pointsToSet) {
-        entries.add(new Entry(pointer, pointsToSet));
+        PointsToSet pending = pendings.get(pointer);
+        if (pending == null) {
+            pending = new PointsToSet();
+            pendings.put(pointer, pending);
+            pointers.add(pointer);
+        }
+        pending.addAll(pointsToSet);
     }
 
     /**
@@ -44,14 +63,16 @@ class WorkList {
      * if this work list is empty.
      */
     Entry pollEntry() {
-        return entries.poll();
+        Pointer pointer = pointers.poll();
+        return pointer == null ? null
+                : new Entry(pointer, pendings.remove(pointer));
     }
 
     /**
      * @return true if the work list is empty, otherwise false.
      */
     boolean isEmpty() {
-        return entries.isEmpty();
+        return pointers.isEmpty();
     }
 
     /**
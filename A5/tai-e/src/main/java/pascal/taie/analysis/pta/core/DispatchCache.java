@@ -0,0 +1,171 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.core;
+
+import pascal.taie.analysis.graph.callgraph.CallGraphs;
+import pascal.taie.analysis.graph.callgraph.CallKind;
+import pascal.taie.ir.proginfo.MethodRef;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.type.Type;
+import pascal.taie.util.collection.Maps;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the results of virtual dispatch for pointer analysis.
+ * <p>
+ * The cache has two layers:
+ * <ul>
+ *     <li>for each call site, the callees of the receiver types that
+ *     have been processed at the call site;</li>
+ *     <li>a bounded LRU cache of the callees keyed by (call kind,
+ *     receiver type, method reference), which is shared by all call
+ *     sites. The call kind is part of the key, as a special call
+ *     (e.g., {@code super.m()}) and a virtual call with the same
+ *     receiver type and method reference resolve to different callees.</li>
+ * </ul>
+ * This class is thread-safe. The per-call-site layer is kept in concurrent
+ * maps, so that the common case, i.e., a receiver type that has been
+ * processed at the call site, does not take any lock. Only the shared
+ * LRU cache and the resolution, which are needed when a call site meets
+ * a new receiver type, are guarded by the monitor of the shared cache.
+ */
+public class DispatchCache {
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Map from call site to (receiver type, callee).
+     */
+    private final Map<Invoke, Map<Type, JMethod>> callSiteCallees =
+            Maps.newConcurrentMap();
+
+    /**
+     * The shared LRU cache, guarded by itself.
+     */
+    private final Map<Key, JMethod> callees;
+
+    private final LongAdder callSiteHits = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public DispatchCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of entries in the shared cache.
+     */
+    public DispatchCache(int capacity) {
+        this.callees = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, JMethod> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the callee resolved for given receiver type at given call site,
+     * or null if the type has not been processed at the call site.
+     */
+    @Nullable
+    public JMethod getCallee(Invoke callSite, Type recvType) {
+        Map<Type, JMethod> calleeOfTypes = callSiteCallees.get(callSite);
+        JMethod callee = calleeOfTypes != null ? calleeOfTypes.get(recvType) : null;
+        if (callee != null) {
+            callSiteHits.increment();
+        }
+        return callee;
+    }
+
+    /**
+     * Resolves the callee of given instance call site with the receiver type,
+     * and records it for the call site.
+     */
+    public JMethod resolveCallee(Invoke callSite, Type recvType) {
+        Map<Type, JMethod> calleeOfTypes = callSiteCallees.get(callSite);
+        if (calleeOfTypes == null) {
+            calleeOfTypes = callSiteCallees.computeIfAbsent(
+                    callSite, unused -> Maps.newConcurrentMap(4));
+        }
+        JMethod callee = calleeOfTypes.get(recvType);
+        if (callee != null) {
+            callSiteHits.increment();
+            return callee;
+        }
+        Key key = new Key(CallGraphs.getCallKind(callSite), recvType,
+                callSite.getMethodRef());
+        // the class hierarchy caches dispatch results in plain maps,
+        // so resolution is serialized together with the shared cache
+        synchronized (callees) {
+            callee = callees.get(key);
+            if (callee != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                callee = CallGraphs.resolveCallee(recvType, callSite);
+                if (callee != null) {
+                    callees.put(key, callee);
+                }
+            }
+        }
+        if (callee != null) {
+            calleeOfTypes.put(recvType, callee);
+        }
+        return callee;
+    }
+
+    /**
+     * @return the ratio of resolutions that are answered by the cache.
+     */
+    public double getHitRate() {
+        long hit = callSiteHits.sum() + hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DispatchCache{call-site hits: %d, hits: %d," +
+                        " misses: %d, hit rate: %.2f%%, entries: %d}",
+                callSiteHits.sum(), hits.sum(), misses.sum(),
+                getHitRate() * 100, getNumberOfEntries());
+    }
+
+    private int getNumberOfEntries() {
+        synchronized (callees) {
+            return callees.size();
+        }
+    }
+
+    private record Key(CallKind kind, Type type, MethodRef methodRef) {
+    }
+}
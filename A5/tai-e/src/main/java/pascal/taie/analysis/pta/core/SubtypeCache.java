@@ -0,0 +1,61 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.core;
+
+import pascal.taie.language.type.Type;
+import pascal.taie.language.type.TypeSystem;
+import pascal.taie.util.collection.Maps;
+
+import java.util.Map;
+
+/**
+ * Caches the results of subtype checks, which are frequently asked
+ * with the same types by type filtering in pointer analysis.
+ * This class is thread-safe.
+ */
+public class SubtypeCache {
+
+    private final TypeSystem typeSystem;
+
+    /**
+     * Map from supertype to (subtype, result of the check).
+     */
+    private final Map<Type, Map<Type, Boolean>> cache = Maps.newConcurrentMap();
+
+    public SubtypeCache(TypeSystem typeSystem) {
+        this.typeSystem = typeSystem;
+    }
+
+    /**
+     * @return true if subtype is a subtype of supertype, otherwise false.
+     */
+    public boolean isSubtype(Type supertype, Type subtype) {
+        if (supertype.equals(subtype)) {
+            return true;
+        }
+        return cache.computeIfAbsent(supertype, unused -> Maps.newConcurrentMap())
+                .computeIfAbsent(subtype,
+                        unused -> typeSystem.isSubtype(supertype, subtype));
+    }
+}
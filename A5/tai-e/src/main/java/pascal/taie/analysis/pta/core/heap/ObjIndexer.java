@@ -0,0 +1,139 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.core.heap;
+
+import pascal.taie.World;
+import pascal.taie.ir.stmt.New;
+import pascal.taie.util.collection.Maps;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Assigns global dense indexes to abstract objects, so that points-to sets
+ * can be represented as bit sets over the indexes.
+ * <p>
+ * An object receives its index the first time {@link #getIndex(Obj)} is
+ * called on it, i.e., when it is first added to a points-to set or used
+ * as the key of a field or array pointer. The indexes are cleared when
+ * {@link World} is reset.
+ * <p>
+ * The index of an object allocated by a {@link New} statement is also
+ * cached on the statement, so that looking it up on the hot paths of
+ * the solver costs a field read instead of a hash lookup. The cached
+ * index is validated against the object array before it is used, thus
+ * a stale index (e.g., after a reset, or when another heap model created
+ * a different object for the same site) falls back to the map.
+ * <p>
+ * This class is thread-safe, as the objects are indexed by the workers of
+ * parallel solvers. Assigning new indexes is synchronized, and lookups are
+ * lock-free: the objects are kept in an array that is replaced by a larger
+ * copy when it is full, so readers always see either the array to which
+ * an object was added or a later copy of it.
+ */
+public final class ObjIndexer {
+
+    private static final Map<Obj, Integer> indexes = Maps.newConcurrentMap();
+
+    private static volatile Obj[] objs = new Obj[1024];
+
+    private static int size;
+
+    static {
+        World.registerResetCallback(ObjIndexer::reset);
+    }
+
+    private ObjIndexer() {
+    }
+
+    /**
+     * @return the index of given object. If the object has not been
+     * indexed yet, a new index is assigned to it.
+     */
+    public static int getIndex(Obj obj) {
+        int cached = getCachedIndex(obj);
+        if (cached != -1) {
+            return cached;
+        }
+        Integer index = indexes.get(obj);
+        return index != null ? index : register(obj);
+    }
+
+    /**
+     * @return the index cached on the allocation site of given object,
+     * or -1 if the site does not hold a valid index of the object.
+     */
+    private static int getCachedIndex(Obj obj) {
+        if (obj.getAllocation() instanceof New site) {
+            int index = site.getObjIndex();
+            Obj[] array = objs;
+            if (index >= 0 && index < array.length && array[index] == obj) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static synchronized int register(Obj obj) {
+        Integer index = indexes.get(obj);
+        if (index != null) { // indexed by another thread
+            return index;
+        }
+        int newIndex = size++;
+        Obj[] array = objs;
+        if (newIndex == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[newIndex] = obj;
+        objs = array;
+        // publish the index after the object is stored to the array
+        indexes.put(obj, newIndex);
+        if (obj.getAllocation() instanceof New site) {
+            site.setObjIndex(newIndex);
+        }
+        return newIndex;
+    }
+
+    /**
+     * @return the index of given object, or -1 if the object
+     * has not been indexed.
+     */
+    public static int indexOf(Obj obj) {
+        int cached = getCachedIndex(obj);
+        return cached != -1 ? cached : indexes.getOrDefault(obj, -1);
+    }
+
+    /**
+     * @return the object with given index.
+     */
+    public static Obj getObj(int index) {
+        return objs[index];
+    }
+
+    private static synchronized void reset() {
+        indexes.clear();
+        objs = new Obj[1024];
+        size = 0;
+    }
+}
@@ -41,6 +41,12 @@ public class New extends AssignStmt<Var, NewExp> {
      */
     private final JMethod container;
 
+    /**
+     * Index of the object allocated by this statement, cached by
+     * {@link pascal.taie.analysis.pta.core.heap.ObjIndexer}.
+     */
+    private int objIndex = -1;
+
     public New(JMethod method, Var lvalue, NewExp rvalue) {
         super(lvalue, rvalue);
         this.container = method;
@@ -50,6 +56,14 @@ public class New extends AssignStmt<Var, NewExp> {
         return container;
     }
 
+    public int getObjIndex() {
+        return objIndex;
+    }
+
+    public void setObjIndex(int objIndex) {
+        this.objIndex = objIndex;
+    }
+
     @Override
     public <T> T accept(StmtVisitor<T> visitor) {
         return visitor.visit(this);
@@ -22,8 +22,17 @@
 
 package pascal.taie.analysis.pta;
 
+import org.junit.Assert;
 import org.junit.Test;
+import pascal.taie.Main;
+import pascal.taie.World;
 import pascal.taie.analysis.Tests;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
+import pascal.taie.analysis.pta.ci.CIPTA;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JMethod;
+
+import java.util.Set;
 
 public class CIPTATest {
 
@@ -78,4 +87,25 @@ public class CIPTATest {
     public void testMergeParam() {
         Tests.testCIPTA(DIR, "MergeParam");
     }
+
+    @Test
+    public void testSuperCall() {
+        Main.main(new String[]{"-pp",
+                "-cp", "src/test/resources/pta/" + DIR,
+                "-m", "SuperCall",
+                "-a", CIPTA.ID + "=implicit-entries:false;only-app:true"});
+        PointerAnalysisResult result = World.get().getResult(CIPTA.ID);
+        CallGraph<Invoke, JMethod> callGraph = result.getCallGraph();
+        JMethod am = World.get().getClassHierarchy()
+                .getClass("SuperCallA").getDeclaredMethod("m");
+        JMethod bm = World.get().getClassHierarchy()
+                .getClass("SuperCallB").getDeclaredMethod("m");
+        // the virtual call in main and super.m() in SuperCallB.m() have
+        // the same receiver type and method reference, but different callees
+        Set<JMethod> calleesOfMain = callGraph.getCalleesOfM(
+                World.get().getMainMethod());
+        Assert.assertTrue(calleesOfMain.contains(bm));
+        Assert.assertFalse(calleesOfMain.contains(am));
+        Assert.assertEquals(Set.of(am), callGraph.getCalleesOfM(bm));
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta;
+
+import org.junit.Test;
+import pascal.taie.analysis.Tests;
+
+/**
+ * Runs the test cases of {@link CIPTATest} with the wave solver,
+ * and compares its results with the same expected results.
+ */
+public class WaveCIPTATest {
+
+    private static final String DIR = CIPTATest.DIR;
+
+    private static final String PARALLELISM = "parallelism:4";
+
+    @Test
+    public void testExample() {
+        Tests.testCIPTA(DIR, "Example", PARALLELISM);
+    }
+
+    @Test
+    public void testArray() {
+        Tests.testCIPTA(DIR, "Array", PARALLELISM);
+    }
+
+    @Test
+    public void testAssign() {
+        Tests.testCIPTA(DIR, "Assign", PARALLELISM);
+    }
+
+    @Test
+    public void testAssign2() {
+        Tests.testCIPTA(DIR, "Assign2", PARALLELISM);
+    }
+
+    @Test
+    public void testStoreLoad() {
+        Tests.testCIPTA(DIR, "StoreLoad", PARALLELISM);
+    }
+
+    @Test
+    public void testCall() {
+        Tests.testCIPTA(DIR, "Call", PARALLELISM);
+    }
+
+    @Test
+    public void testInstanceField() {
+        Tests.testCIPTA(DIR, "InstanceField", PARALLELISM);
+    }
+
+    @Test
+    public void testStaticField() {
+        Tests.testCIPTA(DIR, "StaticField", PARALLELISM);
+    }
+
+    @Test
+    public void testStaticCall() {
+        Tests.testCIPTA(DIR, "StaticCall", PARALLELISM);
+    }
+
+    @Test
+    public void testMergeParam() {
+        Tests.testCIPTA(DIR, "MergeParam", PARALLELISM);
+    }
+}
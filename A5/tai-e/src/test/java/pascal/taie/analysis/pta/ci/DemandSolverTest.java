@@ -0,0 +1,158 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.ci;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pascal.taie.Main;
+import pascal.taie.World;
+import pascal.taie.analysis.pta.PointerAnalysisResult;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.exp.FieldAccess;
+import pascal.taie.ir.exp.InstanceFieldAccess;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.LoadField;
+import pascal.taie.ir.stmt.StoreField;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests that the points-to sets computed on demand are supersets of
+ * the ones computed by the exhaustive solver while the callers are found
+ * by CHA, and the same as them once the callers are filtered through
+ * the exhaustive call graph.
+ */
+public class DemandSolverTest {
+
+    private static final String CLASS_PATH = "src/test/resources/pta/cipta";
+
+    void test(String main) {
+        Main.main(new String[]{"-pp",
+                "-cp", CLASS_PATH,
+                "-m", main,
+                "-a", CIPTA.ID + "=implicit-entries:false;only-app:true;" +
+                        "demand-budget:100000000"});
+        DemandPTAResult result = World.get().getResult(CIPTA.ID);
+        List<Var> vars = World.get().getClassHierarchy()
+                .applicationClasses()
+                .flatMap(c -> c.getDeclaredMethods().stream())
+                .filter(m -> !m.isAbstract() && !m.isNative())
+                .map(JMethod::getIR)
+                .flatMap(ir -> ir.getVars().stream())
+                .toList();
+        // queries before the exhaustive result is computed
+        Map<Var, Set<Obj>> chaResults = Maps.newMap();
+        vars.forEach(var -> chaResults.put(var,
+                Set.copyOf(result.getPointsToSet(var))));
+        PointerAnalysisResult exhaustive = result.getExhaustiveResult();
+        for (Var var : vars) {
+            Assert.assertTrue("points-to set of " + var + " on CHA callers",
+                    chaResults.get(var).containsAll(
+                            exhaustive.getPointsToSet(var)));
+        }
+        // queries after the exhaustive result is computed
+        for (Var var : exhaustive.getVars()) {
+            Assert.assertEquals("points-to set of " + var,
+                    exhaustive.getPointsToSet(var), result.getPointsToSet(var));
+            for (LoadField load : var.getLoadFields()) {
+                assertFieldEquals(result, exhaustive, load.getFieldAccess(),
+                        load.getFieldRef().resolve());
+            }
+            for (StoreField store : var.getStoreFields()) {
+                assertFieldEquals(result, exhaustive, store.getFieldAccess(),
+                        store.getFieldRef().resolve());
+            }
+        }
+    }
+
+    private static void assertFieldEquals(
+            PointerAnalysisResult result, PointerAnalysisResult exhaustive,
+            FieldAccess fieldAccess, JField field) {
+        if (field.isStatic()) {
+            Assert.assertEquals("points-to set of " + field,
+                    exhaustive.getPointsToSet(field),
+                    result.getPointsToSet(field));
+        } else {
+            Var base = ((InstanceFieldAccess) fieldAccess).getBase();
+            Assert.assertEquals("points-to set of " + base + "." + field.getName(),
+                    exhaustive.getPointsToSet(base, field),
+                    result.getPointsToSet(base, field));
+        }
+    }
+
+    @Test
+    public void testExample() {
+        test("Example");
+    }
+
+    @Test
+    public void testArray() {
+        test("Array");
+    }
+
+    @Test
+    public void testAssign() {
+        test("Assign");
+    }
+
+    @Test
+    public void testAssign2() {
+        test("Assign2");
+    }
+
+    @Test
+    public void testStoreLoad() {
+        test("StoreLoad");
+    }
+
+    @Test
+    public void testCall() {
+        test("Call");
+    }
+
+    @Test
+    public void testInstanceField() {
+        test("InstanceField");
+    }
+
+    @Test
+    public void testStaticField() {
+        test("StaticField");
+    }
+
+    @Test
+    public void testStaticCall() {
+        test("StaticCall");
+    }
+
+    @Test
+    public void testMergeParam() {
+        test("MergeParam");
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.util.collection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SparseBitSetTest {
+
+    /**
+     * Bits around the boundaries of 64-bit words, and far apart bits
+     * that make the set grow beyond its initial capacity.
+     */
+    private static final int[] BITS = {
+            0, 1, 63, 64, 65, 127, 128, 1000, 4095, 4096,
+            1 << 20, (1 << 20) + 63, Integer.MAX_VALUE - 1, Integer.MAX_VALUE,
+    };
+
+    private static SparseBitSet of(int... bits) {
+        SparseBitSet set = new SparseBitSet();
+        for (int bit : bits) {
+            set.set(bit);
+        }
+        return set;
+    }
+
+    private static List<Integer> toList(SparseBitSet set) {
+        List<Integer> list = new ArrayList<>();
+        set.forEach(list::add);
+        return list;
+    }
+
+    private static void assertContents(TreeSet<Integer> expected, SparseBitSet set) {
+        assertEquals(new ArrayList<>(expected), toList(set));
+        List<Integer> iterated = new ArrayList<>();
+        PrimitiveIterator.OfInt it = set.iterator();
+        while (it.hasNext()) {
+            iterated.add(it.nextInt());
+        }
+        assertEquals(new ArrayList<>(expected), iterated);
+        assertEquals(expected.size(), set.cardinality());
+        assertEquals(expected.isEmpty(), set.isEmpty());
+    }
+
+    @Test
+    public void testSet() {
+        SparseBitSet set = new SparseBitSet();
+        assertTrue(set.isEmpty());
+        // set in descending order, so that words are inserted in front
+        for (int i = BITS.length - 1; i >= 0; --i) {
+            assertTrue(set.set(BITS[i]));
+            assertFalse(set.set(BITS[i]));
+        }
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int bit : BITS) {
+            expected.add(bit);
+            assertTrue(set.get(bit));
+        }
+        assertFalse(set.get(2));
+        assertFalse(set.get(62));
+        assertFalse(set.get(129));
+        assertFalse(set.get(-1));
+        assertContents(expected, set);
+    }
+
+    @Test
+    public void testSetNegative() {
+        try {
+            new SparseBitSet().set(-1);
+            fail("expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAddAll() {
+        SparseBitSet set = of(0, 64, 4096);
+        // other has only words present in set
+        assertTrue(set.addAll(of(1, 65)));
+        assertFalse(set.addAll(of(0, 1, 65)));
+        // other has new words before, between and after the words of set
+        assertTrue(set.addAll(of(63, 128, 1 << 20, Integer.MAX_VALUE)));
+        assertFalse(set.addAll(new SparseBitSet()));
+        assertFalse(set.addAll(set));
+        assertEquals(List.of(0, 1, 63, 64, 65, 128, 4096, 1 << 20, Integer.MAX_VALUE),
+                toList(set));
+    }
+
+    @Test
+    public void testAddAllDiff() {
+        SparseBitSet set = of(0, 64, 4096);
+        SparseBitSet diff = set.addAllDiff(of(0, 1, 64, 127, 5000));
+        assertEquals(List.of(1, 127, 5000), toList(diff));
+        assertEquals(List.of(0, 1, 64, 127, 4096, 5000), toList(set));
+        assertTrue(set.addAllDiff(of(1, 5000)).isEmpty());
+        assertTrue(set.addAllDiff(set).isEmpty());
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(42);
+        for (int round = 0; round < 100; ++round) {
+            int bound = round % 2 == 0 ? 256 : 1 << 16;
+            SparseBitSet s1 = new SparseBitSet();
+            SparseBitSet s2 = new SparseBitSet();
+            TreeSet<Integer> e1 = new TreeSet<>();
+            TreeSet<Integer> e2 = new TreeSet<>();
+            for (int i = 0; i < 50; ++i) {
+                int b1 = random.nextInt(bound);
+                int b2 = random.nextInt(bound);
+                assertEquals(e1.add(b1), s1.set(b1));
+                assertEquals(e2.add(b2), s2.set(b2));
+            }
+            SparseBitSet copy = s1.copy();
+            TreeSet<Integer> expectedDiff = new TreeSet<>(e2);
+            expectedDiff.removeAll(e1);
+            SparseBitSet diff = s1.addAllDiff(s2);
+            e1.addAll(e2);
+            assertContents(expectedDiff, diff);
+            assertContents(e1, s1);
+            assertEquals(!expectedDiff.isEmpty(), copy.addAll(s2));
+            assertEquals(s1, copy);
+            assertEquals(s1.hashCode(), copy.hashCode());
+        }
+    }
+
+    @Test
+    public void testCopy() {
+        SparseBitSet set = of(1, 100);
+        SparseBitSet copy = set.copy();
+        copy.set(2);
+        copy.set(1000);
+        assertEquals(List.of(1, 100), toList(set));
+        assertEquals(List.of(1, 2, 100, 1000), toList(copy));
+    }
+
+    @Test
+    public void testEquals() {
+        SparseBitSet s1 = of(1, 64, 1000);
+        SparseBitSet s2 = of(1000, 64, 1);
+        assertEquals(s1, s2);
+        assertEquals(s1.hashCode(), s2.hashCode());
+        assertNotEquals(s1, of(1, 64));
+        assertEquals(new SparseBitSet(), new SparseBitSet());
+        assertEquals("{1, 64, 1000}", s1.toString());
+    }
+}
@@ -23,6 +23,8 @@
 package pascal.taie.analysis.pta.core.cs;
 
 import pascal.taie.analysis.graph.callgraph.AbstractCallGraph;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
+import pascal.taie.analysis.graph.callgraph.DefaultCallGraph;
 import pascal.taie.analysis.graph.callgraph.Edge;
 import pascal.taie.analysis.pta.core.cs.context.Context;
 import pascal.taie.analysis.pta.core.cs.element.CSCallSite;
@@ -34,17 +36,40 @@ import pascal.taie.language.classes.JMethod;
 import pascal.taie.util.collection.Sets;
 import pascal.taie.util.collection.Views;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Stream;
 
 /**
  * Represents context-sensitive call graph.
+ * <p>
+ * Call sites of each method are computed once when the method becomes
+ * reachable, and call edges are kept on the {@link CSCallSite}s and
+ * {@link CSMethod}s themselves (plus a flat list of all edges), so that
+ * queries do not walk the IR or the reachable methods again.
+ * The context-insensitive projection of this call graph is maintained
+ * alongside, see {@link #getContextInsensitiveCallGraph()}.
+ * <p>
+ * The methods that modify this call graph, and the methods that read
+ * the flat list of edges, are synchronized, so that it can be built
+ * and queried by multiple threads.
  */
 public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
 
     private final CSManager csManager;
 
+    /**
+     * All call edges in this call graph, in the order they were added.
+     */
+    private final List<Edge<CSCallSite, CSMethod>> edges = new ArrayList<>();
+
+    /**
+     * Context-insensitive projection of this call graph.
+     */
+    private final DefaultCallGraph ciCallGraph = new DefaultCallGraph();
+
     public CSCallGraph(CSManager csManager) {
         this.csManager = csManager;
     }
@@ -52,8 +77,9 @@ public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
     /**
      * Adds an entry method to this call graph.
      */
-    public void addEntryMethod(CSMethod entryMethod) {
+    public synchronized void addEntryMethod(CSMethod entryMethod) {
         entryMethods.add(entryMethod);
+        ciCallGraph.addEntryMethod(entryMethod.getMethod());
     }
 
     /**
@@ -62,10 +88,17 @@ public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
      * @return true if this call graph changed as a result of the call,
      * otherwise false.
      */
-    public boolean addReachableMethod(CSMethod csMethod) {
+    public synchronized boolean addReachableMethod(CSMethod csMethod) {
         if (reachableMethods.add(csMethod)) {
-            callSitesIn(csMethod).forEach(csCallSite ->
-                    csCallSite.setContainer(csMethod));
+            Context context = csMethod.getContext();
+            for (Stmt s : csMethod.getMethod().getIR()) {
+                if (s instanceof Invoke invoke) {
+                    CSCallSite csCallSite = csManager.getCSCallSite(context, invoke);
+                    csCallSite.setContainer(csMethod);
+                    callSitesIn.put(csMethod, csCallSite);
+                }
+            }
+            ciCallGraph.addReachableMethod(csMethod.getMethod());
             return true;
         } else {
             return false;
@@ -79,9 +112,14 @@ public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
      * @return true if the call graph changed as a result of the call,
      * otherwise false.
      */
-    public boolean addEdge(Edge<CSCallSite, CSMethod> edge) {
-        if (edge.getCallSite().addEdge(edge)) {
-            edge.getCallee().addEdge(edge);
+    public synchronized boolean addEdge(Edge<CSCallSite, CSMethod> edge) {
+        CSCallSite csCallSite = edge.getCallSite();
+        CSMethod csCallee = edge.getCallee();
+        if (csCallSite.addEdge(edge)) {
+            csCallee.addEdge(edge);
+            edges.add(edge);
+            ciCallGraph.addEdge(new Edge<>(edge.getKind(),
+                    csCallSite.getCallSite(), csCallee.getMethod()));
             return true;
         } else {
             return false;
@@ -103,8 +141,20 @@ public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
         return csCallSite.getContainer();
     }
 
+    /**
+     * @return the context-insensitive call graph obtained by removing
+     * contexts from this call graph. It is kept up to date as this call
+     * graph grows, thus obtaining it does not copy any edges.
+     */
+    public CallGraph<Invoke, JMethod> getContextInsensitiveCallGraph() {
+        return ciCallGraph;
+    }
+
     @Override
     public Set<CSCallSite> getCallSitesIn(CSMethod csMethod) {
+        if (reachableMethods.contains(csMethod)) {
+            return callSitesIn.get(csMethod);
+        }
         JMethod method = csMethod.getMethod();
         Context context = csMethod.getContext();
         Set<CSCallSite> callSites = Sets.newHybridOrderedSet();
@@ -128,10 +178,14 @@ public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
     }
 
     @Override
-    public Stream<Edge<CSCallSite, CSMethod>> edges() {
-        return reachableMethods.stream()
-                .flatMap(this::callSitesIn)
-                .flatMap(this::edgesOutOf);
+    public synchronized Stream<Edge<CSCallSite, CSMethod>> edges() {
+        // streams a snapshot, as the list may grow while the stream is used
+        return List.copyOf(edges).stream();
+    }
+
+    @Override
+    public synchronized int getNumberOfEdges() {
+        return edges.size();
     }
 
     @Override
@@ -22,29 +22,82 @@
 
 package pascal.taie.analysis.pta.core.cs.context;
 
+import pascal.taie.World;
 import pascal.taie.util.AnalysisException;
+import pascal.taie.util.Indexable;
+import pascal.taie.util.collection.Maps;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * List-based contexts. Each context is represented by a list of context elements.
- *
- * @param <T> type of context elements
+ * <p>
+ * Contexts are hash-consed into a trie, where the parent of each
+ * context is the context without its last element. Hence, each list
+ * of elements is represented by a unique context, which has a unique
+ * index, and contexts can be compared by identity. Appending an element
+ * to a context and truncating a context are cached in the trie, so
+ * they do not copy or compare the element lists.
+ * <p>
+ * The trie is cleared, and the indexes restart, when {@link World} is reset.
  */
-public class ListContext<T> implements Context {
+public class ListContext implements Context, Indexable {
+
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * The empty context, i.e., the root of the trie.
+     */
+    private static final ListContext EMPTY_CONTEXT = new ListContext(null, null);
+
+    static {
+        World.registerResetCallback(ListContext::reset);
+    }
+
+    /**
+     * The context without the last element of this context.
+     */
+    @Nullable
+    private final ListContext parent;
+
+    /**
+     * The last element of this context.
+     */
+    @Nullable
+    private final Object element;
+
+    private final int length;
+
+    private final int index;
 
     /**
-     * The empty context.
+     * Map from element to the context that appends it to this context.
      */
-    private static final ListContext<?> EMPTY_CONTEXT = new ListContext<>(List.of());
+    private final Map<Object, ListContext> children = Maps.newConcurrentMap();
 
     /**
-     * List of elements in the context.
+     * Cache of the suffixes of this context; {@code suffixes[k]} is
+     * the context of the last k elements, or null if not computed yet.
      */
-    private final List<T> elements;
+    private volatile ListContext[] suffixes;
 
-    private ListContext(List<T> elements) {
-        this.elements = elements;
+    private ListContext(@Nullable ListContext parent, @Nullable Object element) {
+        this.parent = parent;
+        this.element = element;
+        this.length = parent == null ? 0 : parent.length + 1;
+        this.index = counter.getAndIncrement();
+    }
+
+    /**
+     * Clears the trie and restarts the indexes after the empty context.
+     */
+    private static void reset() {
+        EMPTY_CONTEXT.children.clear();
+        counter.set(EMPTY_CONTEXT.index + 1);
     }
 
     /**
@@ -59,43 +112,104 @@ public class ListContext<T> implements Context {
      */
     @SafeVarargs
     public static <T> Context make(T... elements) {
-        return elements.length == 0 ?
-                EMPTY_CONTEXT : new ListContext<>(List.of(elements));
+        ListContext context = EMPTY_CONTEXT;
+        for (T element : elements) {
+            context = context.getChild(element);
+        }
+        return context;
+    }
+
+    /**
+     * @return a context that consists of the elements of given context
+     * followed by the element, and is truncated to its last
+     * {@code limit} elements.
+     */
+    public static Context append(Context context, Object element, int limit) {
+        ListContext parent = (ListContext) truncate(context, limit - 1);
+        return limit > 0 ? parent.getChild(element) : parent;
+    }
+
+    /**
+     * @return the context that consists of the last {@code limit}
+     * elements of given context, or the context itself if it does
+     * not have more elements.
+     */
+    public static Context truncate(Context context, int limit) {
+        ListContext listContext = (ListContext) context;
+        if (limit <= 0) {
+            return EMPTY_CONTEXT;
+        }
+        if (listContext.length <= limit) {
+            return listContext;
+        }
+        return listContext.getSuffix(limit);
+    }
+
+    private ListContext getChild(Object element) {
+        ListContext child = children.get(element);
+        if (child == null) {
+            child = children.computeIfAbsent(element,
+                    e -> new ListContext(this, e));
+        }
+        return child;
+    }
+
+    private ListContext getSuffix(int k) {
+        ListContext[] cache = suffixes;
+        if (cache == null) {
+            suffixes = cache = new ListContext[length];
+        }
+        ListContext suffix = cache[k];
+        if (suffix == null) {
+            List<Object> elements = getElements();
+            suffix = EMPTY_CONTEXT;
+            for (Object e : elements.subList(length - k, length)) {
+                suffix = suffix.getChild(e);
+            }
+            // racy writes store the same hash-consed context
+            cache[k] = suffix;
+        }
+        return suffix;
+    }
+
+    private List<Object> getElements() {
+        List<Object> elements = new ArrayList<>(length);
+        for (ListContext c = this; c.parent != null; c = c.parent) {
+            elements.add(0, c.element);
+        }
+        return elements;
     }
 
     @Override
     public int getLength() {
-        return elements.size();
+        return length;
     }
 
     @Override
     public Object getElementAt(int i) {
-        if (i >= elements.size()) {
+        if (i < 0 || i >= length) {
             throw new AnalysisException(
                     "Context " + this + " doesn't have " + i + "-th element");
         }
-        return elements.get(i);
+        ListContext c = this;
+        for (int j = length - 1; j > i; --j) {
+            c = c.parent;
+        }
+        return c.element;
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) {
-            return true;
-        }
-        if (o == null || getClass() != o.getClass()) {
-            return false;
-        }
-        ListContext<?> that = (ListContext<?>) o;
-        return elements.equals(that.elements);
+    public int getIndex() {
+        return index;
     }
 
     @Override
     public int hashCode() {
-        return elements.hashCode();
+        return index;
     }
 
     @Override
     public String toString() {
-        return elements.toString();
+        return getElements().toString();
     }
 }
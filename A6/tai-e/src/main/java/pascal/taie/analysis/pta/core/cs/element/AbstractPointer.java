@@ -23,6 +23,7 @@
 package pascal.taie.analysis.pta.core.cs.element;
 
 import pascal.taie.analysis.pta.pts.PointsToSet;
+import pascal.taie.analysis.pta.pts.PointsToSetPool;
 
 abstract class AbstractPointer implements Pointer {
 
@@ -35,6 +36,10 @@ abstract class AbstractPointer implements Pointer {
 
     @Override
     public void setPointsToSet(PointsToSet pointsToSet) {
+        if (this.pointsToSet != null && this.pointsToSet != pointsToSet) {
+            // the replaced set may hold shared contents of a pool
+            PointsToSetPool.release(this.pointsToSet);
+        }
         this.pointsToSet = pointsToSet;
     }
 
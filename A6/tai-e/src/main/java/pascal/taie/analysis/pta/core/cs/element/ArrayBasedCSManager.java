@@ -0,0 +1,343 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.core.cs.element;
+
+import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.analysis.pta.pts.PointsToSetFactory;
+import pascal.taie.analysis.pta.pts.PointsToSetPool;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.Indexable;
+import pascal.taie.util.collection.LongMap;
+import pascal.taie.util.collection.Maps;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manages context-sensitive elements and pointers by dense indexes.
+ * <p>
+ * Each element (variable, object, call site or method) is given a dense
+ * index: variables and call sites are indexed by the per-method bases
+ * plus their indexes in the IR, and the other elements are numbered
+ * when they are first seen. Context-sensitive elements are then looked
+ * up by (context index, element index): the ones with the empty context
+ * in flat arrays, and the others in {@link LongMap}s keyed by the packed
+ * indexes. Contexts are required to be {@link Indexable}.
+ * <p>
+ * If a {@link PointsToSetPool} is given, the points-to sets of
+ * context-sensitive variables are made by the pool, so that their
+ * contents can be shared between updates.
+ */
+public class ArrayBasedCSManager implements CSManager {
+
+    /**
+     * Pool of the points-to sets of context-sensitive variables,
+     * or null if the sets are not shared.
+     */
+    @Nullable
+    private final PointsToSetPool pool;
+
+    /**
+     * Map from method to its index.
+     */
+    private final Map<JMethod, Integer> methodIndexes = Maps.newMap();
+
+    /**
+     * Map from method to the bases of the indexes of its variables
+     * and call sites.
+     */
+    private final Map<JMethod, IRBase> irBases = Maps.newMap();
+
+    private int varCount;
+
+    private int stmtCount;
+
+    private final Map<Obj, Integer> objIndexes = Maps.newMap();
+
+    private final Map<JField, Integer> fieldIndexes = Maps.newMap();
+
+    private final ElementTable<CSVar> vars = new ElementTable<>();
+
+    /**
+     * Context-sensitive variables of each variable, indexed by
+     * the variable index.
+     */
+    private final List<List<CSVar>> csVarsOfVars = new ArrayList<>();
+
+    /**
+     * Variables that have context-sensitive variables.
+     */
+    private final List<Var> varList = new ArrayList<>();
+
+    private final ElementTable<CSObj> objs = new ElementTable<>();
+
+    private final ElementTable<CSCallSite> callSites = new ElementTable<>();
+
+    private final ElementTable<CSMethod> methods = new ElementTable<>();
+
+    private final Map<JField, StaticField> staticFields = Maps.newMap();
+
+    /**
+     * Map from packed (CSObj index, field index) to InstanceField pointer.
+     */
+    private final LongMap<InstanceField> instanceFields = new LongMap<>();
+
+    private final List<InstanceField> instanceFieldList = new ArrayList<>();
+
+    /**
+     * ArrayIndex pointers, indexed by the indexes of their array objects.
+     */
+    private ArrayIndex[] arrayIndexes = new ArrayIndex[16];
+
+    private final List<ArrayIndex> arrayIndexList = new ArrayList<>();
+
+    public ArrayBasedCSManager() {
+        this(null);
+    }
+
+    public ArrayBasedCSManager(@Nullable PointsToSetPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public CSVar getCSVar(Context context, Var var) {
+        int contextIndex = getIndex(context);
+        int varIndex = getIRBase(var.getMethod()).varBase() + var.getIndex();
+        CSVar csVar = vars.get(contextIndex, varIndex);
+        if (csVar == null) {
+            csVar = new CSVar(var, context);
+            // contexts of the same variable often have equal points-to sets
+            csVar.setPointsToSet(pool != null ?
+                    pool.make() : PointsToSetFactory.make());
+            vars.put(contextIndex, varIndex, csVar);
+            while (csVarsOfVars.size() <= varIndex) {
+                csVarsOfVars.add(null);
+            }
+            List<CSVar> csVars = csVarsOfVars.get(varIndex);
+            if (csVars == null) {
+                csVars = new ArrayList<>(1);
+                csVarsOfVars.set(varIndex, csVars);
+                varList.add(var);
+            }
+            csVars.add(csVar);
+        }
+        return csVar;
+    }
+
+    @Override
+    public CSObj getCSObj(Context heapContext, Obj obj) {
+        int contextIndex = getIndex(heapContext);
+        int objIndex = objIndexes.computeIfAbsent(obj, o -> objIndexes.size());
+        CSObj csObj = objs.get(contextIndex, objIndex);
+        if (csObj == null) {
+            csObj = new CSObj(obj, heapContext);
+            objs.put(contextIndex, objIndex, csObj);
+        }
+        return csObj;
+    }
+
+    @Override
+    public CSCallSite getCSCallSite(Context context, Invoke callSite) {
+        int contextIndex = getIndex(context);
+        int callSiteIndex = getIRBase(callSite.getContainer()).stmtBase()
+                + callSite.getIndex();
+        CSCallSite csCallSite = callSites.get(contextIndex, callSiteIndex);
+        if (csCallSite == null) {
+            csCallSite = new CSCallSite(callSite, context);
+            callSites.put(contextIndex, callSiteIndex, csCallSite);
+        }
+        return csCallSite;
+    }
+
+    @Override
+    public CSMethod getCSMethod(Context context, JMethod method) {
+        int contextIndex = getIndex(context);
+        int methodIndex = methodIndexes.computeIfAbsent(
+                method, m -> methodIndexes.size());
+        CSMethod csMethod = methods.get(contextIndex, methodIndex);
+        if (csMethod == null) {
+            csMethod = new CSMethod(method, context);
+            methods.put(contextIndex, methodIndex, csMethod);
+        }
+        return csMethod;
+    }
+
+    @Override
+    public StaticField getStaticField(JField field) {
+        return staticFields.computeIfAbsent(field,
+                f -> initializePointsToSet(new StaticField(f)));
+    }
+
+    @Override
+    public InstanceField getInstanceField(CSObj base, JField field) {
+        int fieldIndex = fieldIndexes.computeIfAbsent(
+                field, f -> fieldIndexes.size());
+        long key = ((long) base.getIndex() << 32) | fieldIndex;
+        InstanceField instanceField = instanceFields.get(key);
+        if (instanceField == null) {
+            instanceField = initializePointsToSet(new InstanceField(base, field));
+            instanceFields.put(key, instanceField);
+            instanceFieldList.add(instanceField);
+        }
+        return instanceField;
+    }
+
+    @Override
+    public ArrayIndex getArrayIndex(CSObj array) {
+        int index = array.getIndex();
+        if (index >= arrayIndexes.length) {
+            arrayIndexes = Arrays.copyOf(arrayIndexes,
+                    Math.max(index + 1, arrayIndexes.length * 2));
+        }
+        ArrayIndex arrayIndex = arrayIndexes[index];
+        if (arrayIndex == null) {
+            arrayIndex = initializePointsToSet(new ArrayIndex(array));
+            arrayIndexes[index] = arrayIndex;
+            arrayIndexList.add(arrayIndex);
+        }
+        return arrayIndex;
+    }
+
+    @Override
+    public Collection<Var> getVars() {
+        return Collections.unmodifiableList(varList);
+    }
+
+    @Override
+    public Collection<CSVar> getCSVarsOf(Var var) {
+        IRBase base = irBases.get(var.getMethod());
+        if (base == null) {
+            return List.of();
+        }
+        int varIndex = base.varBase() + var.getIndex();
+        List<CSVar> csVars = varIndex < csVarsOfVars.size()
+                ? csVarsOfVars.get(varIndex) : null;
+        return csVars != null ? Collections.unmodifiableList(csVars) : List.of();
+    }
+
+    @Override
+    public Collection<CSVar> getCSVars() {
+        return vars.getElements();
+    }
+
+    @Override
+    public Collection<CSObj> getObjects() {
+        return objs.getElements();
+    }
+
+    @Override
+    public Collection<StaticField> getStaticFields() {
+        return Collections.unmodifiableCollection(staticFields.values());
+    }
+
+    @Override
+    public Collection<InstanceField> getInstanceFields() {
+        return Collections.unmodifiableList(instanceFieldList);
+    }
+
+    @Override
+    public Collection<ArrayIndex> getArrayIndexes() {
+        return Collections.unmodifiableList(arrayIndexList);
+    }
+
+    private IRBase getIRBase(JMethod method) {
+        IRBase base = irBases.get(method);
+        if (base == null) {
+            IR ir = method.getIR();
+            base = new IRBase(varCount, stmtCount);
+            varCount += ir.getVars().size();
+            stmtCount += ir.getStmts().size();
+            irBases.put(method, base);
+        }
+        return base;
+    }
+
+    private static int getIndex(Context context) {
+        return ((Indexable) context).getIndex();
+    }
+
+    private static <P extends Pointer> P initializePointsToSet(P pointer) {
+        pointer.setPointsToSet(PointsToSetFactory.make());
+        return pointer;
+    }
+
+    /**
+     * Bases of the indexes of variables and statements of a method.
+     */
+    private record IRBase(int varBase, int stmtBase) {
+    }
+
+    /**
+     * Table of context-sensitive elements keyed by (context index,
+     * element index). The elements with the empty context, which is
+     * the first {@link pascal.taie.analysis.pta.core.cs.context.ListContext}
+     * and has index 0, are stored in a flat array.
+     */
+    private static class ElementTable<E> {
+
+        private static final int EMPTY_CONTEXT_INDEX = 0;
+
+        private Object[] emptyContextElements = new Object[16];
+
+        private final LongMap<E> elements = new LongMap<>();
+
+        private final List<E> elementList = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        private E get(int contextIndex, int elementIndex) {
+            if (contextIndex == EMPTY_CONTEXT_INDEX) {
+                return elementIndex < emptyContextElements.length
+                        ? (E) emptyContextElements[elementIndex] : null;
+            }
+            return elements.get(((long) contextIndex << 32) | elementIndex);
+        }
+
+        private void put(int contextIndex, int elementIndex, E element) {
+            if (contextIndex == EMPTY_CONTEXT_INDEX) {
+                if (elementIndex >= emptyContextElements.length) {
+                    emptyContextElements = Arrays.copyOf(emptyContextElements,
+                            Math.max(elementIndex + 1, emptyContextElements.length * 2));
+                }
+                emptyContextElements[elementIndex] = element;
+            } else {
+                elements.put(((long) contextIndex << 32) | elementIndex, element);
+            }
+            elementList.add(element);
+        }
+
+        private Collection<E> getElements() {
+            return Collections.unmodifiableList(elementList);
+        }
+    }
+}
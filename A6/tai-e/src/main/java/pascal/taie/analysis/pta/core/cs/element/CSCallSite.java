@@ -25,7 +25,6 @@ package pascal.taie.analysis.pta.core.cs.element;
 import pascal.taie.analysis.graph.callgraph.Edge;
 import pascal.taie.analysis.pta.core.cs.context.Context;
 import pascal.taie.ir.stmt.Invoke;
-import pascal.taie.util.collection.Sets;
 
 import java.util.Collections;
 import java.util.Set;
@@ -45,7 +44,7 @@ public class CSCallSite extends AbstractCSElement {
     /**
      * Call edges from this call site.
      */
-    private final Set<Edge<CSCallSite, CSMethod>> edges = Sets.newHybridSet();
+    private final CallEdges edges = new CallEdges();
 
     CSCallSite(Invoke callSite, Context context) {
         super(context);
@@ -72,6 +71,13 @@ public class CSCallSite extends AbstractCSElement {
         return edges.add(edge);
     }
 
+    /**
+     * @return true if this call site has an edge to given callee.
+     */
+    public boolean hasCallee(CSMethod callee) {
+        return edges.containsCallee(callee);
+    }
+
     public Set<Edge<CSCallSite, CSMethod>> getEdges() {
         return Collections.unmodifiableSet(edges);
     }
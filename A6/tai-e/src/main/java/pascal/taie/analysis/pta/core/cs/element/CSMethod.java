@@ -27,7 +27,6 @@ import pascal.taie.analysis.pta.core.cs.context.Context;
 import pascal.taie.language.classes.JMethod;
 import pascal.taie.util.AbstractResultHolder;
 import pascal.taie.util.ResultHolder;
-import pascal.taie.util.collection.Sets;
 
 import java.util.Collections;
 import java.util.Optional;
@@ -44,7 +43,7 @@ public class CSMethod extends AbstractCSElement {
     /**
      * Call edges to this CS method.
      */
-    private final Set<Edge<CSCallSite, CSMethod>> edges = Sets.newHybridSet();
+    private final Set<Edge<CSCallSite, CSMethod>> edges = new CallEdges();
 
     private final ResultHolder resultHolder = new AbstractResultHolder() {};
 
@@ -24,17 +24,29 @@ package pascal.taie.analysis.pta.core.cs.element;
 
 import pascal.taie.analysis.pta.core.cs.context.Context;
 import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.util.Indexable;
 
 /**
  * Represents context-sensitive objects.
  */
-public class CSObj extends AbstractCSElement {
+public class CSObj extends AbstractCSElement implements Indexable {
 
     private final Obj obj;
 
+    private final int index;
+
     CSObj(Obj obj, Context context) {
         super(context);
         this.obj = obj;
+        this.index = CSObjIndexer.register(this);
+    }
+
+    /**
+     * @return the global index of this object, see {@link CSObjIndexer}.
+     */
+    @Override
+    public int getIndex() {
+        return index;
     }
 
     /**
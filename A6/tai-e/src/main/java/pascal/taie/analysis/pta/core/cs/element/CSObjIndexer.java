@@ -0,0 +1,79 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.core.cs.element;
+
+import pascal.taie.World;
+
+import java.util.Arrays;
+
+/**
+ * Assigns global dense indexes to context-sensitive objects, so that
+ * points-to sets can be represented as bit sets over the indexes.
+ * <p>
+ * Each {@link CSObj} receives its index when it is created by
+ * the {@link CSManager}. The indexes are cleared when {@link World} is reset.
+ * <p>
+ * Registration is synchronized, and lookups are lock-free: the objects
+ * are kept in an array that is replaced by a larger copy when it is full,
+ * so readers always see either the array to which an object was added
+ * or a later copy of it.
+ */
+public final class CSObjIndexer {
+
+    private static volatile CSObj[] objs = new CSObj[1024];
+
+    private static int size;
+
+    static {
+        World.registerResetCallback(CSObjIndexer::reset);
+    }
+
+    private CSObjIndexer() {
+    }
+
+    static synchronized int register(CSObj obj) {
+        int index = size++;
+        CSObj[] array = objs;
+        if (index < array.length) {
+            array[index] = obj;
+        } else {
+            array = Arrays.copyOf(array, array.length * 2);
+            array[index] = obj;
+            objs = array;
+        }
+        return index;
+    }
+
+    /**
+     * @return the object with given index.
+     */
+    public static CSObj getCSObj(int index) {
+        return objs[index];
+    }
+
+    private static synchronized void reset() {
+        objs = new CSObj[1024];
+        size = 0;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.core.cs.element;
+
+import pascal.taie.analysis.graph.callgraph.Edge;
+import pascal.taie.util.collection.Sets;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact set of call edges attached to a {@link CSCallSite}
+ * or a {@link CSMethod}.
+ * <p>
+ * Most call sites have one or two callees, so edges are kept in a plain
+ * array in insertion order and duplicates are detected by linear scan.
+ * When the number of edges exceeds {@link #SCAN_LIMIT}, a hash index is
+ * built on the side for the duplicate check, while iteration still
+ * walks the array.
+ */
+final class CallEdges extends AbstractSet<Edge<CSCallSite, CSMethod>> {
+
+    private static final int SCAN_LIMIT = 8;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Edge<CSCallSite, CSMethod>[] edges = new Edge[2];
+
+    private int size;
+
+    /**
+     * Index for duplicate check, built lazily once {@link #SCAN_LIMIT}
+     * is exceeded.
+     */
+    private Set<Edge<CSCallSite, CSMethod>> index;
+
+    @Override
+    public boolean add(Edge<CSCallSite, CSMethod> edge) {
+        if (index != null) {
+            if (!index.add(edge)) {
+                return false;
+            }
+        } else {
+            if (contains(edge)) {
+                return false;
+            }
+            if (size == SCAN_LIMIT) {
+                index = Sets.newSet(SCAN_LIMIT * 2);
+                index.addAll(this);
+                index.add(edge);
+            }
+        }
+        if (size == edges.length) {
+            edges = Arrays.copyOf(edges, size * 2);
+        }
+        edges[size++] = edge;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (index != null) {
+            return index.contains(o);
+        }
+        for (int i = 0; i < size; ++i) {
+            if (edges[i].equals(o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if this set contains an edge to given callee.
+     */
+    boolean containsCallee(CSMethod callee) {
+        if (index != null) {
+            Edge<CSCallSite, CSMethod> edge = edges[0];
+            return index.contains(
+                    new Edge<>(edge.getKind(), edge.getCallSite(), callee));
+        }
+        for (int i = 0; i < size; ++i) {
+            if (edges[i].getCallee().equals(callee)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Iterator<Edge<CSCallSite, CSMethod>> iterator() {
+        return new Iterator<>() {
+
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Edge<CSCallSite, CSMethod> next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return edges[next++];
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
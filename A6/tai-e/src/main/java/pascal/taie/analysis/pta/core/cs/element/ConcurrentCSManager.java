@@ -0,0 +1,189 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+package pascal.taie.analysis.pta.core.cs.element;
+
+import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.analysis.pta.pts.PointsToSetFactory;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Maps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Thread-safe {@link CSManager} backed by concurrent maps, which is used
+ * by the parallel solver.
+ * <p>
+ * The elements are kept in two-level maps from element (without context)
+ * to context, and lookups of existing elements, which are the vast majority
+ * of the calls on the hot path, do not take any lock. An element is created
+ * at most once via {@link ConcurrentMap#computeIfAbsent}, which only locks
+ * the bin of the key, so workers creating different elements seldom wait
+ * for each other.
+ * <p>
+ * The collections returned by the query methods, e.g., {@link #getCSVars()},
+ * are meant to be read after the analysis finishes; the ones that gather
+ * elements of all contexts are snapshots.
+ */
+public class ConcurrentCSManager implements CSManager {
+
+    private final ConcurrentMap<Var, ConcurrentMap<Context, CSVar>> vars =
+            Maps.newConcurrentMap();
+
+    private final ConcurrentMap<Obj, ConcurrentMap<Context, CSObj>> objs =
+            Maps.newConcurrentMap();
+
+    private final ConcurrentMap<Invoke, ConcurrentMap<Context, CSCallSite>> callSites =
+            Maps.newConcurrentMap();
+
+    private final ConcurrentMap<JMethod, ConcurrentMap<Context, CSMethod>> methods =
+            Maps.newConcurrentMap();
+
+    private final ConcurrentMap<JField, StaticField> staticFields =
+            Maps.newConcurrentMap();
+
+    private final ConcurrentMap<CSObj, ConcurrentMap<JField, InstanceField>> instanceFields =
+            Maps.newConcurrentMap();
+
+    private final ConcurrentMap<CSObj, ArrayIndex> arrayIndexes =
+            Maps.newConcurrentMap();
+
+    @Override
+    public CSVar getCSVar(Context context, Var var) {
+        return get(vars, var, context, (v, c) ->
+                initializePointsToSet(new CSVar(v, c)));
+    }
+
+    @Override
+    public CSObj getCSObj(Context heapContext, Obj obj) {
+        return get(objs, obj, heapContext, CSObj::new);
+    }
+
+    @Override
+    public CSCallSite getCSCallSite(Context context, Invoke callSite) {
+        return get(callSites, callSite, context, CSCallSite::new);
+    }
+
+    @Override
+    public CSMethod getCSMethod(Context context, JMethod method) {
+        return get(methods, method, context, CSMethod::new);
+    }
+
+    @Override
+    public StaticField getStaticField(JField field) {
+        StaticField staticField = staticFields.get(field);
+        return staticField != null ? staticField
+                : staticFields.computeIfAbsent(field,
+                f -> initializePointsToSet(new StaticField(f)));
+    }
+
+    @Override
+    public InstanceField getInstanceField(CSObj base, JField field) {
+        return get(instanceFields, base, field, (b, f) ->
+                initializePointsToSet(new InstanceField(b, f)));
+    }
+
+    @Override
+    public ArrayIndex getArrayIndex(CSObj array) {
+        ArrayIndex arrayIndex = arrayIndexes.get(array);
+        return arrayIndex != null ? arrayIndex
+                : arrayIndexes.computeIfAbsent(array,
+                a -> initializePointsToSet(new ArrayIndex(a)));
+    }
+
+    @Override
+    public Collection<Var> getVars() {
+        return Collections.unmodifiableSet(vars.keySet());
+    }
+
+    @Override
+    public Collection<CSVar> getCSVarsOf(Var var) {
+        Map<Context, CSVar> csVars = vars.get(var);
+        return csVars != null
+                ? Collections.unmodifiableCollection(csVars.values())
+                : List.of();
+    }
+
+    @Override
+    public Collection<CSVar> getCSVars() {
+        return flatten(vars);
+    }
+
+    @Override
+    public Collection<CSObj> getObjects() {
+        return flatten(objs);
+    }
+
+    @Override
+    public Collection<StaticField> getStaticFields() {
+        return Collections.unmodifiableCollection(staticFields.values());
+    }
+
+    @Override
+    public Collection<InstanceField> getInstanceFields() {
+        return flatten(instanceFields);
+    }
+
+    @Override
+    public Collection<ArrayIndex> getArrayIndexes() {
+        return Collections.unmodifiableCollection(arrayIndexes.values());
+    }
+
+    /**
+     * Looks up the element for given keys, and creates it if absent.
+     */
+    private static <K1, K2, E> E get(
+            ConcurrentMap<K1, ConcurrentMap<K2, E>> map, K1 k1, K2 k2,
+            BiFunction<K1, K2, E> factory) {
+        ConcurrentMap<K2, E> inner = map.get(k1);
+        if (inner == null) {
+            inner = map.computeIfAbsent(k1, unused -> Maps.newConcurrentMap(4));
+        }
+        E element = inner.get(k2);
+        return element != null ? element
+                : inner.computeIfAbsent(k2, k -> factory.apply(k1, k));
+    }
+
+    /**
+     * @return a snapshot of the elements in given two-level map.
+     */
+    private static <E> Collection<E> flatten(
+            Map<?, ? extends Map<?, E>> map) {
+        return map.values()
+                .stream()
+                .flatMap(m -> m.values().stream())
+                .toList();
+    }
+
+    private static <P extends Pointer> P initializePointsToSet(P pointer) {
+        pointer.setPointsToSet(PointsToSetFactory.make());
+        return pointer;
+    }
+}
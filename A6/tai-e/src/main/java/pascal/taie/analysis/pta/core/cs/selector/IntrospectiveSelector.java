@@ -0,0 +1,161 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.core.cs.selector;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.cs.element.CSCallSite;
+import pascal.taie.analysis.pta.core.cs.element.CSMethod;
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.Sets;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Context selector that falls back from a (deep) context sensitivity
+ * variant to a cheaper one for the methods whose contexts blow up
+ * during the analysis.
+ * <p>
+ * The solver reports the new contexts of each method and the objects
+ * added to the points-to sets of its variables. Once a method has more
+ * contexts than {@code maxContexts}, or the total size of the points-to
+ * sets of its variables exceeds {@code maxPointsToSize}, the method is
+ * demoted: the contexts of it (and the heap contexts of the objects
+ * allocated in it) created from then on are selected by the fallback
+ * selector. The contexts created before the demotion are kept, so the
+ * result remains sound. This class is thread-safe.
+ */
+public class IntrospectiveSelector implements ContextSelector {
+
+    private static final Logger logger = LogManager.getLogger(IntrospectiveSelector.class);
+
+    private final ContextSelector delegate;
+
+    private final ContextSelector fallback;
+
+    private final int maxContexts;
+
+    private final long maxPointsToSize;
+
+    private final Map<JMethod, Stats> stats = Maps.newConcurrentMap();
+
+    private final Set<JMethod> demotedMethods = Sets.newConcurrentSet();
+
+    public IntrospectiveSelector(ContextSelector delegate, ContextSelector fallback,
+                                 int maxContexts, long maxPointsToSize) {
+        this.delegate = delegate;
+        this.fallback = fallback;
+        this.maxContexts = maxContexts;
+        this.maxPointsToSize = maxPointsToSize;
+    }
+
+    @Override
+    public Context getEmptyContext() {
+        return delegate.getEmptyContext();
+    }
+
+    @Override
+    public Context selectContext(CSCallSite callSite, JMethod callee) {
+        return getSelector(callee).selectContext(callSite, callee);
+    }
+
+    @Override
+    public Context selectContext(CSCallSite callSite, CSObj recv, JMethod callee) {
+        return getSelector(callee).selectContext(callSite, recv, callee);
+    }
+
+    @Override
+    public Context selectHeapContext(CSMethod method, Obj obj) {
+        return getSelector(method.getMethod()).selectHeapContext(method, obj);
+    }
+
+    private ContextSelector getSelector(JMethod method) {
+        return demotedMethods.contains(method) ? fallback : delegate;
+    }
+
+    /**
+     * Reports a new reachable context-sensitive method.
+     */
+    public void onNewContext(CSMethod csMethod) {
+        JMethod method = csMethod.getMethod();
+        Stats s = getStats(method);
+        if (s.contexts.incrementAndGet() > maxContexts) {
+            demote(method, s);
+        }
+    }
+
+    /**
+     * Reports that {@code size} objects are added to the points-to sets
+     * of the variables of given method.
+     */
+    public void onNewObjects(JMethod method, int size) {
+        Stats s = getStats(method);
+        if (s.pointsToSize.addAndGet(size) > maxPointsToSize) {
+            demote(method, s);
+        }
+    }
+
+    private Stats getStats(JMethod method) {
+        return stats.computeIfAbsent(method, unused -> new Stats());
+    }
+
+    private void demote(JMethod method, Stats s) {
+        if (demotedMethods.add(method)) {
+            logger.info("Demoted {} (#contexts: {}, points-to size: {})",
+                    method, s.contexts.get(), s.pointsToSize.get());
+        }
+    }
+
+    /**
+     * @return the methods that have been demoted.
+     */
+    public Set<JMethod> getDemotedMethods() {
+        return Collections.unmodifiableSet(demotedMethods);
+    }
+
+    /**
+     * Statistics of a method.
+     */
+    private static class Stats {
+
+        /**
+         * Number of reachable contexts of the method.
+         */
+        private final AtomicInteger contexts = new AtomicInteger();
+
+        /**
+         * Sum of the sizes of the points-to sets of the variables
+         * of the method.
+         */
+        private final AtomicLong pointsToSize = new AtomicLong();
+    }
+}
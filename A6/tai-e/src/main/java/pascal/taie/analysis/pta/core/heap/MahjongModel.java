@@ -0,0 +1,111 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.core.heap;
+
+import pascal.taie.ir.exp.ReferenceLiteral;
+import pascal.taie.ir.stmt.New;
+import pascal.taie.language.type.Type;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Heap model that merges the objects of groups of allocation sites,
+ * e.g., the type-consistent ones found by
+ * {@link pascal.taie.analysis.pta.toolkit.mahjong.Mahjong}.
+ * The objects of the allocation sites in a group are represented by one
+ * {@link MergedObj}, and the other objects are given by the base model.
+ * <p>
+ * The first site of each group, in the order of container method
+ * signature and statement index, gives the container method and type
+ * of the merged object. The groups are numbered in the order of their
+ * first sites. Hence, the merged objects do not depend on the iteration
+ * order of the groups, or on the order in which the solver (possibly
+ * on multiple threads) asks for the objects.
+ * <p>
+ * The sites whose objects the base model already merges, e.g., the
+ * string objects under option "merge-string-objects", are left to
+ * the base model, so that a merged object never represents another
+ * merged object. A group is dropped if fewer than two sites remain.
+ */
+public class MahjongModel implements HeapModel {
+
+    private static final Comparator<New> SITE_ORDER = Comparator
+            .comparing((New site) -> site.getContainer().getSignature())
+            .thenComparingInt(New::getIndex);
+
+    private final HeapModel base;
+
+    /**
+     * Map from allocation site to the merged object of its group.
+     */
+    private final Map<New, MergedObj> mergedObjs = Maps.newMap();
+
+    public MahjongModel(HeapModel base, Collection<Set<New>> groups) {
+        this.base = base;
+        // sort the groups by their first sites
+        Map<New, Set<New>> groupsByFirstSite = new TreeMap<>(SITE_ORDER);
+        for (Set<New> group : groups) {
+            Set<New> sites = Sets.newHybridSet();
+            for (New site : group) {
+                if (!(base.getObj(site) instanceof MergedObj)) {
+                    sites.add(site);
+                }
+            }
+            if (sites.size() > 1) {
+                groupsByFirstSite.put(Collections.min(sites, SITE_ORDER), sites);
+            }
+        }
+        int i = 0;
+        for (Map.Entry<New, Set<New>> entry : groupsByFirstSite.entrySet()) {
+            New first = entry.getKey();
+            Type type = first.getRValue().getType();
+            MergedObj mergedObj = new MergedObj(type, "mahjong#" + (i++) + ":" + type);
+            // the first represented object is the representative
+            mergedObj.addRepresentedObj(base.getObj(first));
+            entry.getValue().forEach(site -> mergedObjs.put(site, mergedObj));
+        }
+    }
+
+    @Override
+    public Obj getObj(New allocSite) {
+        MergedObj mergedObj = mergedObjs.get(allocSite);
+        if (mergedObj == null) {
+            return base.getObj(allocSite);
+        }
+        mergedObj.addRepresentedObj(base.getObj(allocSite));
+        return mergedObj;
+    }
+
+    @Override
+    public Obj getConstantObj(ReferenceLiteral value) {
+        return base.getConstantObj(value);
+    }
+}
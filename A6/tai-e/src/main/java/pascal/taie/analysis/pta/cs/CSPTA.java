@@ -26,15 +26,31 @@ import pascal.taie.analysis.ProgramAnalysis;
 import pascal.taie.analysis.pta.PointerAnalysisResult;
 import pascal.taie.analysis.pta.core.cs.selector.CISelector;
 import pascal.taie.analysis.pta.core.cs.selector.ContextSelector;
+import pascal.taie.analysis.pta.core.cs.selector.HeapDepthSelector;
+import pascal.taie.analysis.pta.core.cs.selector.IntrospectiveSelector;
+import pascal.taie.analysis.pta.core.cs.selector.SelectiveSelector;
+import pascal.taie.analysis.pta.core.cs.selector._2ObjSelector;
 import pascal.taie.analysis.pta.core.heap.AllocationSiteBasedModel;
+import pascal.taie.analysis.pta.core.heap.HeapModel;
+import pascal.taie.analysis.pta.core.heap.MahjongModel;
 import pascal.taie.analysis.pta.plugin.ResultProcessor;
+import pascal.taie.analysis.pta.toolkit.mahjong.Mahjong;
+import pascal.taie.analysis.pta.toolkit.scaler.Scaler;
+import pascal.taie.analysis.pta.toolkit.zipper.Zipper;
 import pascal.taie.config.AnalysisConfig;
 import pascal.taie.config.AnalysisOptions;
 import pascal.taie.config.ConfigException;
+import pascal.taie.ir.stmt.New;
+import pascal.taie.language.classes.JMethod;
 import pascal.taie.util.Strings;
+import pascal.taie.util.collection.Maps;
 
+import javax.annotation.Nullable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Context-sensitive pointer analysis.
@@ -50,15 +66,140 @@ public class CSPTA extends ProgramAnalysis {
     @Override
     public PointerAnalysisResult analyze() {
         AnalysisOptions options = getOptions();
-        Solver solver = new Solver(options,
-                new AllocationSiteBasedModel(options),
-                getContextSelector(options.getString("cs")));
-        solver.solve();
-        PointerAnalysisResult result = solver.getResult();
+        String cs = options.getString("cs");
+        // option "heap-model: mahjong" merges type-consistent objects
+        boolean mahjong = "mahjong".equals(options.get("heap-model"));
+        // Scaler, Zipper and Mahjong share the context-insensitive pre-analysis
+        PointerAnalysisResult preResult =
+                mahjong || cs.equals("scaler") || cs.equals("zipper")
+                        ? runPreAnalysis(options) : null;
+        Set<JMethod> pcms = cs.equals("zipper")
+                ? new Zipper(preResult).selectPrecisionCriticalMethods() : null;
+        ContextSelector selector = switch (cs) {
+            case "scaler" -> getScalerSelector(options, preResult);
+            case "zipper" -> getZipperSelector(pcms);
+            default -> getContextSelector(cs);
+        };
+        // option "heap-depth" limits the depth of heap contexts
+        if (options.get("heap-depth") instanceof Integer heapDepth) {
+            selector = new HeapDepthSelector(selector, heapDepth);
+        }
+        selector = getIntrospectiveSelector(options, selector);
+        HeapModel heapModel = new AllocationSiteBasedModel(options);
+        List<Set<New>> mergeableSites = mahjong
+                ? new Mahjong(preResult).selectMergeableSites() : null;
+        if (mergeableSites != null) {
+            heapModel = new MahjongModel(heapModel, mergeableSites);
+        }
+        PointerAnalysisResult result;
+        // option "parallelism" runs the analysis on given number of threads
+        if (options.get("parallelism") instanceof Integer parallelism
+                && parallelism > 1) {
+            ParallelSolver solver = new ParallelSolver(
+                    heapModel, selector, parallelism);
+            solver.solve();
+            result = solver.getResult();
+        } else {
+            Solver solver = new Solver(options, heapModel, selector);
+            solver.solve();
+            result = solver.getResult();
+        }
+        // keep the decisions of the pre-analysis clients for inspection
+        if (pcms != null) {
+            result.storeResult(Zipper.class.getName(), pcms);
+        }
+        if (mergeableSites != null) {
+            result.storeResult(Mahjong.class.getName(), mergeableSites);
+        }
+        if (selector instanceof IntrospectiveSelector introspective) {
+            result.storeResult(IntrospectiveSelector.class.getName(),
+                    introspective.getDemotedMethods());
+        }
         ResultProcessor.process(options, result);
         return result;
     }
 
+    /**
+     * Selects context sensitivity variants for each method by Scaler,
+     * based on the result of a context-insensitive pre-analysis.
+     * The total scalability threshold of Scaler is given by option
+     * "scaler-tst"; if it is absent, Scaler's default is used.
+     */
+    private static ContextSelector getScalerSelector(
+            AnalysisOptions options, PointerAnalysisResult preResult) {
+        Scaler scaler = options.get("scaler-tst") instanceof Number tst
+                ? new Scaler(preResult, tst.longValue())
+                : new Scaler(preResult);
+        Map<String, ContextSelector> variants = Maps.newMap();
+        Map<JMethod, ContextSelector> selectors = Maps.newMap();
+        scaler.selectContext().forEach((method, variant) ->
+                selectors.put(method, variants.computeIfAbsent(
+                        variant, CSPTA::getContextSelector)));
+        return new SelectiveSelector(selectors, new CISelector());
+    }
+
+    /**
+     * Applies 2-object sensitivity to the precision-critical methods
+     * found by Zipper, and context insensitivity to the other methods.
+     * The precision-critical methods are also stored in the result,
+     * keyed by the name of {@link Zipper}.
+     */
+    private static ContextSelector getZipperSelector(Set<JMethod> pcms) {
+        ContextSelector _2obj = new _2ObjSelector();
+        Map<JMethod, ContextSelector> selectors = Maps.newMap(pcms.size());
+        pcms.forEach(method -> selectors.put(method, _2obj));
+        return new SelectiveSelector(selectors, new CISelector());
+    }
+
+    /**
+     * Wraps given selector to demote the methods whose contexts blow up.
+     * A method is demoted when its number of contexts exceeds option
+     * "demote-contexts", or the total size of the points-to sets of its
+     * variables exceeds option "demote-pts-size". Demoted methods use
+     * the variant given by option "demote-to" ("ci" by default).
+     * If neither threshold is given, the selector is returned as is.
+     * The demoted methods are stored in the result, keyed by the name
+     * of {@link IntrospectiveSelector}.
+     */
+    private static ContextSelector getIntrospectiveSelector(
+            AnalysisOptions options, ContextSelector selector) {
+        Number maxContexts = getNumber(options, "demote-contexts");
+        Number maxPtsSize = getNumber(options, "demote-pts-size");
+        if (maxContexts == null && maxPtsSize == null) {
+            return selector;
+        }
+        String fallback = options.get("demote-to") instanceof String variant
+                ? variant : "ci";
+        return new IntrospectiveSelector(selector, getContextSelector(fallback),
+                maxContexts != null ? maxContexts.intValue() : Integer.MAX_VALUE,
+                maxPtsSize != null ? maxPtsSize.longValue() : Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the value of given numeric option, or null if it is absent.
+     * @throws ConfigException if the value is not a number.
+     */
+    @Nullable
+    private static Number getNumber(AnalysisOptions options, String key) {
+        Object value = options.get(key);
+        if (value != null && !(value instanceof Number)) {
+            throw new ConfigException("Expected a number for option \"" +
+                    key + "\", but given: " + value);
+        }
+        return (Number) value;
+    }
+
+    /**
+     * Runs context-insensitive pointer analysis for the selective
+     * context sensitivity variants and the Mahjong heap model.
+     */
+    private static PointerAnalysisResult runPreAnalysis(AnalysisOptions options) {
+        Solver solver = new Solver(options,
+                new AllocationSiteBasedModel(options), new CISelector());
+        solver.solve();
+        return solver.getResult();
+    }
+
     private static ContextSelector getContextSelector(String cs) {
         if (cs.equals("ci")) {
             return new CISelector();
@@ -0,0 +1,602 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.cs;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.World;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
+import pascal.taie.analysis.graph.callgraph.CallGraphs;
+import pascal.taie.analysis.graph.callgraph.CallKind;
+import pascal.taie.analysis.graph.callgraph.Edge;
+import pascal.taie.analysis.pta.PointerAnalysisResult;
+import pascal.taie.analysis.pta.PointerAnalysisResultImpl;
+import pascal.taie.analysis.pta.core.DispatchCache;
+import pascal.taie.analysis.pta.core.SubtypeCache;
+import pascal.taie.analysis.pta.core.cs.CSCallGraph;
+import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.cs.element.CSCallSite;
+import pascal.taie.analysis.pta.core.cs.element.CSManager;
+import pascal.taie.analysis.pta.core.cs.element.CSMethod;
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.CSVar;
+import pascal.taie.analysis.pta.core.cs.element.ConcurrentCSManager;
+import pascal.taie.analysis.pta.core.cs.element.Pointer;
+import pascal.taie.analysis.pta.core.cs.selector.ContextSelector;
+import pascal.taie.analysis.pta.core.cs.selector.IntrospectiveSelector;
+import pascal.taie.analysis.pta.core.heap.HeapModel;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.analysis.pta.pts.PointsToSet;
+import pascal.taie.analysis.pta.pts.PointsToSetFactory;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.InvokeExp;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.LoadArray;
+import pascal.taie.ir.stmt.LoadField;
+import pascal.taie.ir.stmt.StoreArray;
+import pascal.taie.ir.stmt.StoreField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.type.Type;
+import pascal.taie.util.AnalysisException;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Context-sensitive pointer analysis solver that runs on multiple threads.
+ * <p>
+ * Pointers are sharded over the worker threads by their hash codes.
+ * The points-to set and the PFG successors of each pointer are owned by
+ * its shard, and only the worker of the shard modifies them. The sets
+ * are plain {@link PointsToSet}s, which are not shared via any
+ * {@link pascal.taie.analysis.pta.pts.PointsToSetPool}, thus they are
+ * unioned without locking. A worker that finds new objects or a new PFG
+ * edge for a pointer of another shard posts them to the inbox of that
+ * shard, and the owner merges the objects into its own {@link WorkList}.
+ * The CS elements, which are shared by all workers, are kept in
+ * a {@link ConcurrentCSManager}, whose lookups do not lock; the call graph
+ * and the shared layer of the dispatch cache, which are updated far less
+ * often, are synchronized.
+ * <p>
+ * The result is the same as the one of {@link Solver}, as the least
+ * fixed point does not depend on the order of propagation. This does not
+ * hold for {@link IntrospectiveSelector}: it demotes methods by the sizes
+ * of points-to sets observed during propagation, which depend on the
+ * order of propagation, thus the two solvers may demote different
+ * methods and produce different (but both sound) results.
+ * Pointer-equivalent variables and PFG cycles are not collapsed here,
+ * since collapsing would merge points-to sets owned by different shards.
+ */
+class ParallelSolver {
+
+    private static final Logger logger = LogManager.getLogger(ParallelSolver.class);
+
+    /**
+     * Time for which an idle worker waits before checking its inbox again.
+     */
+    private static final long IDLE_NANOS = 20_000;
+
+    /**
+     * Maximum number of messages that a worker takes from its inbox
+     * before processing them, so that busy producers cannot keep it
+     * draining forever.
+     */
+    private static final int BATCH_SIZE = 4096;
+
+    private final HeapModel heapModel;
+
+    private final ContextSelector contextSelector;
+
+    /**
+     * The context selector if it demotes methods by introspection,
+     * which is notified of the growth of contexts and points-to sets.
+     */
+    @Nullable
+    private final IntrospectiveSelector introspective;
+
+    private final int nThreads;
+
+    private CSManager csManager;
+
+    private CSCallGraph callGraph;
+
+    private Shard[] shards;
+
+    /**
+     * Number of posted messages that have not been fully processed.
+     * The analysis reaches its fixed point when this becomes zero.
+     */
+    private AtomicLong pending;
+
+    /**
+     * The first exception thrown by the workers, if any.
+     */
+    private AtomicReference<Throwable> failure;
+
+    /**
+     * Cache of the PFG templates of methods, see {@link MethodTemplate}.
+     */
+    private Map<JMethod, MethodTemplate> templates;
+
+    private SubtypeCache subtypeCache;
+
+    private DispatchCache dispatchCache;
+
+    private PointerAnalysisResult result;
+
+    ParallelSolver(HeapModel heapModel, ContextSelector contextSelector,
+                   int nThreads) {
+        this.heapModel = heapModel;
+        this.contextSelector = contextSelector;
+        this.introspective = contextSelector instanceof IntrospectiveSelector s
+                ? s : null;
+        this.nThreads = nThreads;
+    }
+
+    void solve() {
+        initialize();
+        analyze();
+        logger.info("{}", dispatchCache);
+        if (introspective != null) {
+            logger.info("#demoted methods: {}",
+                    introspective.getDemotedMethods().size());
+        }
+    }
+
+    private void initialize() {
+        // no points-to set pool, so that each worker unions its own sets
+        // without the synchronization of the pool
+        csManager = new ConcurrentCSManager();
+        callGraph = new CSCallGraph(csManager);
+        shards = new Shard[nThreads];
+        for (int i = 0; i < nThreads; ++i) {
+            shards[i] = new Shard();
+        }
+        pending = new AtomicLong();
+        failure = new AtomicReference<>();
+        templates = Maps.newConcurrentMap();
+        subtypeCache = new SubtypeCache(World.get().getTypeSystem());
+        dispatchCache = new DispatchCache();
+        // process program entry, i.e., main method
+        Context defContext = contextSelector.getEmptyContext();
+        JMethod main = World.get().getMainMethod();
+        CSMethod csMethod = csManager.getCSMethod(defContext, main);
+        callGraph.addEntryMethod(csMethod);
+        addReachable(csMethod, getTemplate(main));
+    }
+
+    /**
+     * @return the PFG template of given method. The IR of the method
+     * is built when its template is built, which happens before any
+     * worker reads the IR.
+     */
+    private MethodTemplate getTemplate(JMethod method) {
+        return templates.computeIfAbsent(method, m -> {
+            // neither IR building nor the heap model is thread-safe
+            synchronized (heapModel) {
+                return MethodTemplate.build(m, heapModel);
+            }
+        });
+    }
+
+    /**
+     * Processes new reachable context-sensitive method.
+     */
+    private void addReachable(CSMethod csMethod, MethodTemplate template) {
+        if (callGraph.addReachableMethod(csMethod)) {
+            if (introspective != null) {
+                introspective.onNewContext(csMethod);
+            }
+            instantiate(csMethod, template);
+        }
+    }
+
+    /**
+     * Adds the objects, PFG edges and static calls of given template
+     * to the analysis in the context of given method.
+     */
+    private void instantiate(CSMethod csMethod, MethodTemplate template) {
+        Context context = csMethod.getContext();
+        // x = new T()
+        template.getObjects().forEach((var, objs) -> {
+            PointsToSet pts = PointsToSetFactory.make();
+            for (Obj obj : objs) {
+                Context heapContext = contextSelector.selectHeapContext(csMethod, obj);
+                pts.addObject(csManager.getCSObj(heapContext, obj));
+            }
+            post(csManager.getCSVar(context, var), pts);
+        });
+        // x = y, x = (T) y
+        for (MethodTemplate.Assign assign : template.getAssigns()) {
+            CSVar source = csManager.getCSVar(context, assign.source());
+            CSVar target = csManager.getCSVar(context, assign.target());
+            if (assign.castType() != null) {
+                addPFGEdge(source, target, assign.castType());
+            } else {
+                addPFGEdge(source, target);
+            }
+        }
+        // x = T.f
+        for (MethodTemplate.StaticLoad load : template.getStaticLoads()) {
+            addPFGEdge(csManager.getStaticField(load.field()),
+                    csManager.getCSVar(context, load.target()));
+        }
+        // T.f = y
+        for (MethodTemplate.StaticStore store : template.getStaticStores()) {
+            addPFGEdge(csManager.getCSVar(context, store.source()),
+                    csManager.getStaticField(store.field()));
+        }
+        // r = T.m(...)
+        for (MethodTemplate.StaticCall call : template.getStaticCalls()) {
+            CSCallSite csCallSite = csManager.getCSCallSite(context, call.callSite());
+            Context calleeContext = contextSelector.selectContext(
+                    csCallSite, call.callee());
+            processCallEdge(new Edge<>(CallKind.STATIC, csCallSite,
+                    csManager.getCSMethod(calleeContext, call.callee())));
+        }
+    }
+
+    /**
+     * Adds an edge "source -> target" to the PFG.
+     */
+    private void addPFGEdge(Pointer source, Pointer target) {
+        // objects flowing to a variable must conform to its declared type
+        Type filter = target instanceof CSVar &&
+                !subtypeCache.isSubtype(target.getType(), source.getType()) ?
+                target.getType() : null;
+        addPFGEdge(source, target, filter);
+    }
+
+    /**
+     * Adds an edge "source -> target" with given type filter to the PFG.
+     * The edge is added by the shard of the source.
+     */
+    private void addPFGEdge(Pointer source, Pointer target, @Nullable Type filter) {
+        if (source != target) {
+            post(shardOf(source), new NewEdge(source, target, filter));
+        }
+    }
+
+    /**
+     * Posts the objects in pts that can pass through a PFG edge
+     * with given filters to the target of the edge.
+     */
+    private void propagateAlong(Pointer target, @Nullable Set<Type> filters,
+                                PointsToSet pts) {
+        PointsToSet filtered = filters == null ? pts : filterByTypes(pts, filters);
+        if (!filtered.isEmpty()) {
+            post(target, filtered);
+        }
+    }
+
+    /**
+     * @return the objects in pts whose types are subtypes of any of
+     * given types.
+     */
+    private PointsToSet filterByTypes(PointsToSet pts, Set<Type> types) {
+        PointsToSet result = PointsToSetFactory.make();
+        for (CSObj obj : pts) {
+            Type objType = obj.getObject().getType();
+            for (Type type : types) {
+                if (subtypeCache.isSubtype(type, objType)) {
+                    result.addObject(obj);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Shard shardOf(Pointer pointer) {
+        return shards[Math.floorMod(pointer.hashCode(), shards.length)];
+    }
+
+    /**
+     * Posts objects to given pointer. The posted set must not be
+     * modified afterwards, as it is read by the owner of the pointer.
+     */
+    private void post(Pointer pointer, PointsToSet pts) {
+        post(shardOf(pointer), new NewObjects(pointer, pts));
+    }
+
+    private void post(Shard shard, Message message) {
+        // count the message before it becomes visible to the owner
+        pending.incrementAndGet();
+        shard.inbox.add(message);
+    }
+
+    /**
+     * Runs the workers until no message is pending.
+     */
+    private void analyze() {
+        Thread[] workers = new Thread[nThreads];
+        for (int i = 0; i < nThreads; ++i) {
+            Shard shard = shards[i];
+            workers[i] = new Thread(() -> work(shard), "cspta-worker-" + i);
+            workers[i].start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException("Interrupted while waiting for workers", e);
+        }
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException e) {
+            throw e;
+        } else if (t instanceof Error e) {
+            throw e;
+        } else if (t != null) {
+            throw new AnalysisException(t);
+        }
+    }
+
+    /**
+     * Processes the messages to given shard. The messages taken from the
+     * inbox are counted as pending until the work they cause is done,
+     * so that the workers stop only at the fixed point.
+     */
+    private void work(Shard shard) {
+        try {
+            while (failure.get() == null) {
+                int taken = 0;
+                Message message;
+                while (taken < BATCH_SIZE &&
+                        (message = shard.inbox.poll()) != null) {
+                    ++taken;
+                    if (message instanceof NewObjects m) {
+                        shard.workList.addEntry(m.pointer(), m.pointsToSet());
+                    } else {
+                        addEdge(shard, (NewEdge) message);
+                    }
+                }
+                while (!shard.workList.isEmpty()) {
+                    WorkList.Entry entry = shard.workList.pollEntry();
+                    propagate(shard, entry.pointer(), entry.pointsToSet());
+                }
+                if (taken > 0) {
+                    pending.addAndGet(-taken);
+                } else if (pending.get() == 0) {
+                    break;
+                } else {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            }
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+    }
+
+    /**
+     * Adds a PFG edge in the shard of its source. If the edge already
+     * exists with other filters, the new filter is added to them, so that
+     * the edge lets through the objects of each filter. An edge without
+     * filter removes all filters of the edge.
+     */
+    private void addEdge(Shard shard, NewEdge edge) {
+        Map<Pointer, Set<Type>> succs = shard.succs.computeIfAbsent(
+                edge.source(), unused -> Maps.newMap());
+        Pointer target = edge.target();
+        Type filter = edge.filter();
+        if (succs.containsKey(target)) {
+            Set<Type> oldFilters = succs.get(target);
+            if (oldFilters == null ||
+                    (filter != null && oldFilters.contains(filter))) {
+                return;
+            }
+            if (filter != null) {
+                Set<Type> union = Sets.newHybridSet(oldFilters);
+                union.add(filter);
+                succs.put(target, union);
+            } else {
+                succs.put(target, null);
+            }
+        } else {
+            succs.put(target, filter == null ? null : Set.of(filter));
+        }
+        PointsToSet pts = edge.source().getPointsToSet();
+        if (!pts.isEmpty()) {
+            // only the objects of the new filter need to be propagated;
+            // pt(source) keeps growing in this shard, thus post a copy of it
+            propagateAlong(target, filter == null ? null : Set.of(filter),
+                    filter == null ? copyOf(pts) : pts);
+        }
+    }
+
+    private static PointsToSet copyOf(PointsToSet pts) {
+        PointsToSet copy = PointsToSetFactory.make();
+        copy.addAll(pts);
+        return copy;
+    }
+
+    /**
+     * Propagates pointsToSet to pt(pointer) and its PFG successors,
+     * and processes the new objects of the pointer.
+     */
+    private void propagate(Shard shard, Pointer pointer, PointsToSet pointsToSet) {
+        PointsToSet delta = pointer.getPointsToSet().addAllDiff(pointsToSet);
+        if (!delta.isEmpty()) {
+            Map<Pointer, Set<Type>> succs = shard.succs.get(pointer);
+            if (succs != null) {
+                succs.forEach((succ, filters) -> propagateAlong(succ, filters, delta));
+            }
+            if (pointer instanceof CSVar csVar) {
+                processVar(csVar, delta);
+            }
+        }
+    }
+
+    /**
+     * Processes the instance field/array accesses and instance calls
+     * on given variable for its new objects.
+     */
+    private void processVar(CSVar csVar, PointsToSet delta) {
+        Var var = csVar.getVar();
+        Context context = csVar.getContext();
+        if (introspective != null) {
+            introspective.onNewObjects(var.getMethod(), delta.size());
+        }
+        for (CSObj obj : delta) {
+            // x.f = y
+            for (StoreField store : var.getStoreFields()) {
+                addPFGEdge(csManager.getCSVar(context, store.getRValue()),
+                        csManager.getInstanceField(obj, store.getFieldRef().resolve()));
+            }
+            // y = x.f
+            for (LoadField load : var.getLoadFields()) {
+                addPFGEdge(csManager.getInstanceField(obj, load.getFieldRef().resolve()),
+                        csManager.getCSVar(context, load.getLValue()));
+            }
+            // x[i] = y
+            for (StoreArray store : var.getStoreArrays()) {
+                addPFGEdge(csManager.getCSVar(context, store.getRValue()),
+                        csManager.getArrayIndex(obj));
+            }
+            // y = x[i]
+            for (LoadArray load : var.getLoadArrays()) {
+                addPFGEdge(csManager.getArrayIndex(obj),
+                        csManager.getCSVar(context, load.getLValue()));
+            }
+            processCall(csVar, obj);
+        }
+    }
+
+    /**
+     * Processes instance calls when points-to set of the receiver variable changes.
+     *
+     * @param recv    the receiver variable
+     * @param recvObj set of new discovered objects pointed by the variable.
+     */
+    private void processCall(CSVar recv, CSObj recvObj) {
+        Context context = recv.getContext();
+        for (Invoke callSite : recv.getVar().getInvokes()) {
+            Type type = recvObj.getObject().getType();
+            JMethod callee = dispatchCache.getCallee(callSite, type);
+            if (callee == null) {
+                callee = dispatchCache.resolveCallee(callSite, type);
+            }
+            CSCallSite csCallSite = csManager.getCSCallSite(context, callSite);
+            Context calleeContext = contextSelector.selectContext(
+                    csCallSite, recvObj, callee);
+            CSMethod csCallee = csManager.getCSMethod(calleeContext, callee);
+            // processes the edge first, which ensures that the IR
+            // of the callee has been built. The edges of csCallSite are
+            // only added by the shard of recv, so the check is safe.
+            if (!csCallSite.hasCallee(csCallee)) {
+                processCallEdge(new Edge<>(CallGraphs.getCallKind(callSite),
+                        csCallSite, csCallee));
+            }
+            post(csManager.getCSVar(calleeContext, callee.getIR().getThis()),
+                    PointsToSetFactory.make(recvObj));
+        }
+    }
+
+    /**
+     * Adds a call edge to the call graph. If the edge is new, makes the
+     * callee reachable and connects arguments and return values.
+     */
+    private void processCallEdge(Edge<CSCallSite, CSMethod> edge) {
+        CSMethod csCallee = edge.getCallee();
+        MethodTemplate template = getTemplate(csCallee.getMethod());
+        if (callGraph.addEdge(edge)) {
+            addReachable(csCallee, template);
+            Context callerContext = edge.getCallSite().getContext();
+            Context calleeContext = csCallee.getContext();
+            Invoke callSite = edge.getCallSite().getCallSite();
+            IR calleeIR = csCallee.getMethod().getIR();
+            InvokeExp invokeExp = callSite.getInvokeExp();
+            for (int i = 0; i < invokeExp.getArgCount(); ++i) {
+                addPFGEdge(csManager.getCSVar(callerContext, invokeExp.getArg(i)),
+                        csManager.getCSVar(calleeContext, calleeIR.getParam(i)));
+            }
+            Var result = callSite.getResult();
+            if (result != null) {
+                CSVar csResult = csManager.getCSVar(callerContext, result);
+                for (Var ret : calleeIR.getReturnVars()) {
+                    addPFGEdge(csManager.getCSVar(calleeContext, ret), csResult);
+                }
+            }
+        }
+    }
+
+    PointerAnalysisResult getResult() {
+        if (result == null) {
+            result = new PointerAnalysisResultImpl(csManager, callGraph) {
+                @Override
+                public CallGraph<Invoke, JMethod> getCallGraph() {
+                    return callGraph.getContextInsensitiveCallGraph();
+                }
+            };
+        }
+        return result;
+    }
+
+    /**
+     * Message posted to a shard.
+     */
+    private interface Message {
+    }
+
+    /**
+     * New objects for a pointer of the shard.
+     */
+    private record NewObjects(Pointer pointer, PointsToSet pointsToSet)
+            implements Message {
+    }
+
+    /**
+     * New PFG edge whose source is a pointer of the shard.
+     */
+    private record NewEdge(Pointer source, Pointer target, @Nullable Type filter)
+            implements Message {
+    }
+
+    /**
+     * State of a shard, which is only accessed by its own worker,
+     * except for the inbox.
+     */
+    private static class Shard {
+
+        private final Queue<Message> inbox = new ConcurrentLinkedQueue<>();
+
+        private final WorkList workList = new WorkList();
+
+        /**
+         * Map from pointer to its PFG successors and the type filters
+         * of the edges.
+         */
+        private final Map<Pointer, Map<Pointer, Set<Type>>> succs = Maps.newMap();
+    }
+}
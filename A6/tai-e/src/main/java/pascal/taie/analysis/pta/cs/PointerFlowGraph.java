@@ -23,10 +23,19 @@
 package pascal.taie.analysis.pta.cs;
 
 import pascal.taie.analysis.pta.core.cs.element.Pointer;
+import pascal.taie.language.type.Type;
 import pascal.taie.util.collection.Maps;
 import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.Sets;
+import pascal.taie.util.collection.TwoKeyMap;
 
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Represents pointer flow graph in context-sensitive pointer analysis.
@@ -39,19 +48,221 @@ class PointerFlowGraph {
     private final MultiMap<Pointer, Pointer> successors = Maps.newMultiMap();
 
     /**
-     * Adds an edge (source -> target) to this PFG.
+     * Map from an edge (source, target) to its type filters. Only objects
+     * whose types are subtypes of any of the filters can flow through
+     * the edge. Edges without filters do not have entries.
+     */
+    private final TwoKeyMap<Pointer, Pointer, Set<Type>> filters = Maps.newTwoKeyMap();
+
+    /**
+     * Map from a collapsed pointer to its parent in the union-find forest
+     * of collapsed cycles. Representatives do not have entries.
+     */
+    private final Map<Pointer, Pointer> parents = Maps.newMap();
+
+    /**
+     * Map from a representative to the other pointers collapsed into it.
+     */
+    private final MultiMap<Pointer, Pointer> members = Maps.newMultiMap();
+
+    /**
+     * Adds an edge (source -> target) to this PFG. Both ends are
+     * replaced by their representatives, and edges inside a collapsed
+     * cycle are dropped.
      *
      * @return true if this PFG changed as a result of the call,
      * otherwise false.
      */
     boolean addEdge(Pointer source, Pointer target) {
-        return successors.put(source, target);
+        return addEdge(source, target, null);
+    }
+
+    /**
+     * Adds an edge (source -> target) with given type filter to this PFG.
+     * If the edge already exists with other filters, given filter is added
+     * to them, so that the edge lets through the objects of each filter.
+     * Adding the edge without filter removes all its filters.
+     *
+     * @return true if this PFG changed as a result of the call,
+     * otherwise false.
+     */
+    boolean addEdge(Pointer source, Pointer target, @Nullable Type filter) {
+        return addEdgeWithFilters(source, target,
+                filter == null ? null : Set.of(filter));
+    }
+
+    private boolean addEdgeWithFilters(Pointer source, Pointer target,
+                                       @Nullable Set<Type> newFilters) {
+        Pointer sourceRep = getRep(source);
+        Pointer targetRep = getRep(target);
+        if (sourceRep == targetRep) {
+            return false;
+        }
+        if (successors.put(sourceRep, targetRep)) {
+            if (newFilters != null) {
+                filters.put(sourceRep, targetRep, newFilters);
+            }
+            return true;
+        }
+        Set<Type> oldFilters = filters.get(sourceRep, targetRep);
+        if (oldFilters == null ||
+                (newFilters != null && oldFilters.containsAll(newFilters))) {
+            return false;
+        }
+        if (newFilters == null) {
+            filters.remove(sourceRep, targetRep);
+        } else {
+            Set<Type> union = Sets.newHybridSet(oldFilters);
+            union.addAll(newFilters);
+            filters.put(sourceRep, targetRep, union);
+        }
+        return true;
+    }
+
+    /**
+     * @return the type filters of edge (source -> target), or null if
+     * the edge has no filter. The source should be a representative and
+     * the target should be one of its successors by {@link #getSuccsOf}.
+     */
+    @Nullable
+    Set<Type> getFilters(Pointer source, Pointer target) {
+        return filters.get(source, target);
     }
 
     /**
-     * @return successors of given pointer in the PFG.
+     * @return successors of given pointer in the PFG. The successors
+     * may have been collapsed since the edges were added, so callers
+     * should look up their representatives by {@link #getRep(Pointer)}.
      */
     Set<Pointer> getSuccsOf(Pointer pointer) {
-        return successors.get(pointer);
+        return successors.get(getRep(pointer));
+    }
+
+    /**
+     * @return the representative of the collapsed cycle that contains
+     * given pointer, or the pointer itself if it is not collapsed.
+     */
+    Pointer getRep(Pointer pointer) {
+        Pointer rep = pointer;
+        Pointer parent;
+        while ((parent = parents.get(rep)) != null) {
+            rep = parent;
+        }
+        // path compression
+        while (pointer != rep) {
+            Pointer next = parents.put(pointer, rep);
+            pointer = next;
+        }
+        return rep;
+    }
+
+    /**
+     * @return the pointers (other than the representative itself)
+     * that have been collapsed into given representative.
+     */
+    Set<Pointer> getMembersOf(Pointer rep) {
+        return members.get(rep);
+    }
+
+    /**
+     * Finds the cycle that contains given representative, i.e., the
+     * strongly connected component of the PFG that contains it.
+     * Edges with type filters are ignored, so that all pointers in
+     * the cycle can share the same points-to set.
+     *
+     * @return the representatives in the cycle, or an empty set if
+     * the pointer is not in any cycle.
+     */
+    Set<Pointer> findCycle(Pointer start) {
+        // iterative Tarjan's algorithm, starting from the given pointer
+        Map<Pointer, Integer> indexes = Maps.newMap();
+        Map<Pointer, Integer> lowLinks = Maps.newMap();
+        Deque<Pointer> stack = new ArrayDeque<>();
+        Set<Pointer> onStack = Sets.newSet();
+        Deque<Frame> frames = new ArrayDeque<>();
+        Consumer<Pointer> visit = p -> {
+            int index = indexes.size();
+            indexes.put(p, index);
+            lowLinks.put(p, index);
+            stack.push(p);
+            onStack.add(p);
+            frames.push(new Frame(p, getSuccsOf(p).iterator()));
+        };
+        visit.accept(start);
+        while (!frames.isEmpty()) {
+            Frame frame = frames.peek();
+            if (frame.succs().hasNext()) {
+                Pointer next = frame.succs().next();
+                if (getFilters(frame.pointer(), next) != null) {
+                    continue;
+                }
+                Pointer succ = getRep(next);
+                if (!indexes.containsKey(succ)) {
+                    visit.accept(succ);
+                } else if (onStack.contains(succ)) {
+                    lowLinks.merge(frame.pointer(), indexes.get(succ), Math::min);
+                }
+            } else {
+                frames.pop();
+                Pointer pointer = frame.pointer();
+                if (!frames.isEmpty()) {
+                    lowLinks.merge(frames.peek().pointer(),
+                            lowLinks.get(pointer), Math::min);
+                }
+                if (lowLinks.get(pointer).equals(indexes.get(pointer))) {
+                    Set<Pointer> scc = Sets.newSet();
+                    Pointer p;
+                    do {
+                        p = stack.pop();
+                        onStack.remove(p);
+                        scc.add(p);
+                    } while (p != pointer);
+                    if (pointer == start) {
+                        return scc.size() > 1 ? scc : Set.of();
+                    }
+                }
+            }
+        }
+        return Set.of();
+    }
+
+    /**
+     * Collapses the given representatives into one node. The successors
+     * and members of all collapsed pointers are moved to the new
+     * representative.
+     *
+     * @return the representative of the collapsed cycle.
+     */
+    Pointer collapse(Set<Pointer> cycle) {
+        Pointer rep = null;
+        for (Pointer p : cycle) {
+            if (rep == null || getSuccsOf(p).size() > getSuccsOf(rep).size()) {
+                rep = p;
+            }
+        }
+        for (Pointer p : cycle) {
+            if (p != rep) {
+                parents.put(p, rep);
+                members.put(rep, p);
+                members.putAll(rep, members.get(p));
+                members.removeAll(p);
+                for (Pointer succ : successors.get(p)) {
+                    Pointer succRep = getRep(succ);
+                    if (succRep != rep) {
+                        addEdgeWithFilters(rep, succRep, filters.get(p, succ));
+                    }
+                }
+                successors.removeAll(p);
+                filters.removeAll(p);
+            }
+        }
+        successors.removeAll(rep, cycle);
+        for (Pointer p : cycle) {
+            filters.remove(rep, p);
+        }
+        return rep;
+    }
+
+    private record Frame(Pointer pointer, Iterator<Pointer> succs) {
     }
 }
@@ -25,42 +25,50 @@ package pascal.taie.analysis.pta.cs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import pascal.taie.World;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
 import pascal.taie.analysis.graph.callgraph.CallGraphs;
 import pascal.taie.analysis.graph.callgraph.CallKind;
 import pascal.taie.analysis.graph.callgraph.Edge;
 import pascal.taie.analysis.pta.PointerAnalysisResult;
 import pascal.taie.analysis.pta.PointerAnalysisResultImpl;
+import pascal.taie.analysis.pta.core.DispatchCache;
+import pascal.taie.analysis.pta.core.SubtypeCache;
 import pascal.taie.analysis.pta.core.cs.CSCallGraph;
 import pascal.taie.analysis.pta.core.cs.context.Context;
-import pascal.taie.analysis.pta.core.cs.element.ArrayIndex;
+import pascal.taie.analysis.pta.core.cs.element.ArrayBasedCSManager;
 import pascal.taie.analysis.pta.core.cs.element.CSCallSite;
 import pascal.taie.analysis.pta.core.cs.element.CSManager;
 import pascal.taie.analysis.pta.core.cs.element.CSMethod;
 import pascal.taie.analysis.pta.core.cs.element.CSObj;
 import pascal.taie.analysis.pta.core.cs.element.CSVar;
-import pascal.taie.analysis.pta.core.cs.element.InstanceField;
 import pascal.taie.analysis.pta.core.cs.element.MapBasedCSManager;
 import pascal.taie.analysis.pta.core.cs.element.Pointer;
-import pascal.taie.analysis.pta.core.cs.element.StaticField;
 import pascal.taie.analysis.pta.core.cs.selector.ContextSelector;
+import pascal.taie.analysis.pta.core.cs.selector.IntrospectiveSelector;
 import pascal.taie.analysis.pta.core.heap.HeapModel;
 import pascal.taie.analysis.pta.core.heap.Obj;
 import pascal.taie.analysis.pta.pts.PointsToSet;
 import pascal.taie.analysis.pta.pts.PointsToSetFactory;
+import pascal.taie.analysis.pta.pts.PointsToSetPool;
 import pascal.taie.config.AnalysisOptions;
+import pascal.taie.ir.IR;
 import pascal.taie.ir.exp.InvokeExp;
 import pascal.taie.ir.exp.Var;
-import pascal.taie.ir.stmt.Copy;
 import pascal.taie.ir.stmt.Invoke;
 import pascal.taie.ir.stmt.LoadArray;
 import pascal.taie.ir.stmt.LoadField;
-import pascal.taie.ir.stmt.New;
-import pascal.taie.ir.stmt.StmtVisitor;
 import pascal.taie.ir.stmt.StoreArray;
 import pascal.taie.ir.stmt.StoreField;
-import pascal.taie.language.classes.JField;
 import pascal.taie.language.classes.JMethod;
 import pascal.taie.language.type.Type;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 class Solver {
 
@@ -72,6 +80,13 @@ class Solver {
 
     private final ContextSelector contextSelector;
 
+    /**
+     * The context selector if it demotes methods by introspection,
+     * which is notified of the growth of contexts and points-to sets.
+     */
+    @Nullable
+    private final IntrospectiveSelector introspective;
+
     private CSManager csManager;
 
     private CSCallGraph callGraph;
@@ -80,25 +95,59 @@ class Solver {
 
     private WorkList workList;
 
+    /**
+     * PFG edges that have triggered cycle detection.
+     */
+    private MultiMap<Pointer, Pointer> checkedEdges;
+
+    /**
+     * Cache of the PFG templates of methods, which are shared by
+     * all contexts of each method.
+     */
+    private Map<JMethod, MethodTemplate> templates;
+
+    private SubtypeCache subtypeCache;
+
+    private DispatchCache dispatchCache;
+
     private PointerAnalysisResult result;
 
+    private PointsToSetPool pool;
+
     Solver(AnalysisOptions options, HeapModel heapModel,
            ContextSelector contextSelector) {
         this.options = options;
         this.heapModel = heapModel;
         this.contextSelector = contextSelector;
+        this.introspective = contextSelector instanceof IntrospectiveSelector s
+                ? s : null;
     }
 
     void solve() {
         initialize();
         analyze();
+        logger.info("#shared points-to sets of variables: {}",
+                pool.getNumberOfSharedContents());
+        logger.info("{}", dispatchCache);
+        if (introspective != null) {
+            logger.info("#demoted methods: {}",
+                    introspective.getDemotedMethods().size());
+        }
     }
 
     private void initialize() {
-        csManager = new MapBasedCSManager();
+        pool = new PointsToSetPool();
+        // option "cs-manager: map" uses the map-based manager
+        // instead of the array-based one
+        csManager = "map".equals(options.get("cs-manager"))
+                ? new MapBasedCSManager() : new ArrayBasedCSManager(pool);
         callGraph = new CSCallGraph(csManager);
         pointerFlowGraph = new PointerFlowGraph();
         workList = new WorkList();
+        checkedEdges = Maps.newMultiMap();
+        templates = Maps.newMap();
+        subtypeCache = new SubtypeCache(World.get().getTypeSystem());
+        dispatchCache = new DispatchCache();
         // process program entry, i.e., main method
         Context defContext = contextSelector.getEmptyContext();
         JMethod main = World.get().getMainMethod();
@@ -111,39 +160,246 @@ class Solver {
      * Processes new reachable context-sensitive method.
      */
     private void addReachable(CSMethod csMethod) {
-        // TODO - finish me
+        if (callGraph.addReachableMethod(csMethod)) {
+            if (introspective != null) {
+                introspective.onNewContext(csMethod);
+            }
+            MethodTemplate template = templates.computeIfAbsent(
+                    csMethod.getMethod(),
+                    m -> MethodTemplate.build(m, heapModel));
+            substituteVars(csMethod, template);
+            instantiate(csMethod, template);
+        }
     }
 
     /**
-     * Processes the statements in context-sensitive new reachable methods.
+     * Collapses the pointer-equivalent variables of given method,
+     * which are found by {@link VarSubstitution}.
      */
-    private class StmtProcessor implements StmtVisitor<Void> {
+    private void substituteVars(CSMethod csMethod, MethodTemplate template) {
+        Context context = csMethod.getContext();
+        for (List<Var> vars : template.getEquivalentVars()) {
+            Set<Pointer> pointers = Sets.newSet();
+            vars.forEach(var -> pointers.add(pointerFlowGraph.getRep(
+                    csManager.getCSVar(context, var))));
+            if (pointers.size() > 1) {
+                collapse(pointers);
+            }
+        }
+    }
 
-        private final CSMethod csMethod;
+    /**
+     * Adds the objects, PFG edges and static calls of given template
+     * to the analysis in the context of given method.
+     */
+    private void instantiate(CSMethod csMethod, MethodTemplate template) {
+        Context context = csMethod.getContext();
+        // x = new T()
+        template.getObjects().forEach((var, objs) -> {
+            PointsToSet pts = PointsToSetFactory.make();
+            for (Obj obj : objs) {
+                Context heapContext = contextSelector.selectHeapContext(csMethod, obj);
+                pts.addObject(csManager.getCSObj(heapContext, obj));
+            }
+            workList.addEntry(csManager.getCSVar(context, var), pts);
+        });
+        // x = y, x = (T) y
+        for (MethodTemplate.Assign assign : template.getAssigns()) {
+            CSVar source = csManager.getCSVar(context, assign.source());
+            CSVar target = csManager.getCSVar(context, assign.target());
+            if (assign.castType() != null) {
+                addPFGEdge(source, target, assign.castType());
+            } else {
+                addPFGEdge(source, target);
+            }
+        }
+        // x = T.f
+        for (MethodTemplate.StaticLoad load : template.getStaticLoads()) {
+            addPFGEdge(csManager.getStaticField(load.field()),
+                    csManager.getCSVar(context, load.target()));
+        }
+        // T.f = y
+        for (MethodTemplate.StaticStore store : template.getStaticStores()) {
+            addPFGEdge(csManager.getCSVar(context, store.source()),
+                    csManager.getStaticField(store.field()));
+        }
+        // r = T.m(...)
+        for (MethodTemplate.StaticCall call : template.getStaticCalls()) {
+            CSCallSite csCallSite = csManager.getCSCallSite(context, call.callSite());
+            Context calleeContext = contextSelector.selectContext(
+                    csCallSite, call.callee());
+            processCallEdge(new Edge<>(CallKind.STATIC, csCallSite,
+                    csManager.getCSMethod(calleeContext, call.callee())));
+        }
+    }
 
-        private final Context context;
+    /**
+     * Adds an edge "source -> target" to the PFG.
+     */
+    private void addPFGEdge(Pointer source, Pointer target) {
+        // objects flowing to a variable must conform to its declared type
+        Type filter = target instanceof CSVar &&
+                !subtypeCache.isSubtype(target.getType(), source.getType()) ?
+                target.getType() : null;
+        addPFGEdge(source, target, filter);
+    }
 
-        private StmtProcessor(CSMethod csMethod) {
-            this.csMethod = csMethod;
-            this.context = csMethod.getContext();
+    /**
+     * Adds an edge "source -> target" with given type filter to the PFG.
+     */
+    private void addPFGEdge(Pointer source, Pointer target, @Nullable Type filter) {
+        if (pointerFlowGraph.addEdge(source, target, filter)) {
+            PointsToSet pts = source.getPointsToSet();
+            if (!pts.isEmpty()) {
+                propagateAlong(pointerFlowGraph.getRep(source),
+                        pointerFlowGraph.getRep(target), pts);
+            }
         }
+    }
 
-        // TODO - if you choose to implement addReachable()
-        //  via visitor pattern, then finish me
+    /**
+     * Adds the objects in pts that can pass through the PFG edge
+     * "source -> target" to the work list.
+     */
+    private void propagateAlong(Pointer source, Pointer target, PointsToSet pts) {
+        Set<Type> filters = pointerFlowGraph.getFilters(source, target);
+        PointsToSet filtered = filters == null ? pts : filterByTypes(pts, filters);
+        if (!filtered.isEmpty()) {
+            workList.addEntry(pointerFlowGraph.getRep(target), filtered);
+        }
     }
 
     /**
-     * Adds an edge "source -> target" to the PFG.
+     * @return the objects in pts whose types are subtypes of any of
+     * given types.
      */
-    private void addPFGEdge(Pointer source, Pointer target) {
-        // TODO - finish me
+    private PointsToSet filterByTypes(PointsToSet pts, Set<Type> types) {
+        PointsToSet result = PointsToSetFactory.make();
+        for (CSObj obj : pts) {
+            Type objType = obj.getObject().getType();
+            for (Type type : types) {
+                if (subtypeCache.isSubtype(type, objType)) {
+                    result.addObject(obj);
+                    break;
+                }
+            }
+        }
+        return result;
     }
 
     /**
      * Processes work-list entries until the work-list is empty.
      */
     private void analyze() {
-        // TODO - finish me
+        while (!workList.isEmpty()) {
+            WorkList.Entry entry = workList.pollEntry();
+            Pointer pointer = pointerFlowGraph.getRep(entry.pointer());
+            PointsToSet delta = propagate(pointer, entry.pointsToSet());
+            if (!delta.isEmpty()) {
+                // pt(pointer) stays unchanged until its next entry,
+                // thus shares it with the equal sets in the meantime
+                PointsToSetPool.share(pointer.getPointsToSet());
+                processDelta(pointer, delta);
+                detectCycle(pointer);
+            }
+        }
+    }
+
+    /**
+     * Processes the new objects of given pointer and of all pointers
+     * collapsed into it.
+     */
+    private void processDelta(Pointer pointer, PointsToSet delta) {
+        if (pointer instanceof CSVar csVar) {
+            processVar(csVar, delta);
+        }
+        for (Pointer member : pointerFlowGraph.getMembersOf(pointer)) {
+            if (member instanceof CSVar csVar) {
+                processVar(csVar, delta);
+            }
+        }
+    }
+
+    /**
+     * Processes the instance field/array accesses and instance calls
+     * on given variable for its new objects.
+     */
+    private void processVar(CSVar csVar, PointsToSet delta) {
+        Var var = csVar.getVar();
+        Context context = csVar.getContext();
+        if (introspective != null) {
+            introspective.onNewObjects(var.getMethod(), delta.size());
+        }
+        for (CSObj obj : delta) {
+            // x.f = y
+            for (StoreField store : var.getStoreFields()) {
+                addPFGEdge(csManager.getCSVar(context, store.getRValue()),
+                        csManager.getInstanceField(obj, store.getFieldRef().resolve()));
+            }
+            // y = x.f
+            for (LoadField load : var.getLoadFields()) {
+                addPFGEdge(csManager.getInstanceField(obj, load.getFieldRef().resolve()),
+                        csManager.getCSVar(context, load.getLValue()));
+            }
+            // x[i] = y
+            for (StoreArray store : var.getStoreArrays()) {
+                addPFGEdge(csManager.getCSVar(context, store.getRValue()),
+                        csManager.getArrayIndex(obj));
+            }
+            // y = x[i]
+            for (LoadArray load : var.getLoadArrays()) {
+                addPFGEdge(csManager.getArrayIndex(obj),
+                        csManager.getCSVar(context, load.getLValue()));
+            }
+            processCall(csVar, obj);
+        }
+    }
+
+    /**
+     * Lazy cycle detection. If a successor of the pointer already has
+     * the same points-to set as the pointer, propagation along the edge
+     * brings nothing new, which hints that both are in a cycle. Each
+     * edge triggers the detection at most once.
+     */
+    private void detectCycle(Pointer pointer) {
+        PointsToSet pts = pointer.getPointsToSet();
+        for (Pointer succ : pointerFlowGraph.getSuccsOf(pointer)) {
+            Pointer succRep = pointerFlowGraph.getRep(succ);
+            if (succRep != pointer &&
+                    pts.equals(succRep.getPointsToSet()) &&
+                    checkedEdges.put(pointer, succRep)) {
+                Set<Pointer> cycle = pointerFlowGraph.findCycle(pointer);
+                if (!cycle.isEmpty()) {
+                    collapse(cycle);
+                    logger.debug("Collapsed a PFG cycle of {} pointers", cycle.size());
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Collapses pointer-equivalent pointers (e.g., the pointers in a cycle)
+     * into one representative, which shares the union of their points-to sets.
+     */
+    private void collapse(Set<Pointer> pointers) {
+        PointsToSet union = PointsToSetFactory.make();
+        pointers.forEach(p -> union.addAll(p.getPointsToSet()));
+        // the pointers (and the pointers collapsed into them)
+        // may miss some objects in the union, process them before collapsing
+        for (Pointer p : pointers) {
+            PointsToSet diff = p.getPointsToSet().addAllDiff(union);
+            if (!diff.isEmpty()) {
+                processDelta(p, diff);
+            }
+        }
+        Pointer rep = pointerFlowGraph.collapse(pointers);
+        rep.setPointsToSet(union);
+        pointerFlowGraph.getMembersOf(rep)
+                .forEach(member -> member.setPointsToSet(union));
+        for (Pointer succ : pointerFlowGraph.getSuccsOf(rep)) {
+            propagateAlong(rep, succ, union);
+        }
     }
 
     /**
@@ -151,8 +407,13 @@ class Solver {
      * returns the difference set of pointsToSet and pt(pointer).
      */
     private PointsToSet propagate(Pointer pointer, PointsToSet pointsToSet) {
-        // TODO - finish me
-        return null;
+        PointsToSet delta = pointer.getPointsToSet().addAllDiff(pointsToSet);
+        if (!delta.isEmpty()) {
+            for (Pointer succ : pointerFlowGraph.getSuccsOf(pointer)) {
+                propagateAlong(pointer, succ, delta);
+            }
+        }
+        return delta;
     }
 
     /**
@@ -162,7 +423,48 @@ class Solver {
      * @param recvObj set of new discovered objects pointed by the variable.
      */
     private void processCall(CSVar recv, CSObj recvObj) {
-        // TODO - finish me
+        Context context = recv.getContext();
+        for (Invoke callSite : recv.getVar().getInvokes()) {
+            JMethod callee = resolveCallee(recvObj, callSite);
+            CSCallSite csCallSite = csManager.getCSCallSite(context, callSite);
+            Context calleeContext = contextSelector.selectContext(
+                    csCallSite, recvObj, callee);
+            CSMethod csCallee = csManager.getCSMethod(calleeContext, callee);
+            workList.addEntry(
+                    csManager.getCSVar(calleeContext, callee.getIR().getThis()),
+                    PointsToSetFactory.make(recvObj));
+            if (!csCallSite.hasCallee(csCallee)) {
+                processCallEdge(new Edge<>(CallGraphs.getCallKind(callSite),
+                        csCallSite, csCallee));
+            }
+        }
+    }
+
+    /**
+     * Adds a call edge to the call graph. If the edge is new, makes the
+     * callee reachable and connects arguments and return values.
+     */
+    private void processCallEdge(Edge<CSCallSite, CSMethod> edge) {
+        if (callGraph.addEdge(edge)) {
+            CSMethod csCallee = edge.getCallee();
+            addReachable(csCallee);
+            Context callerContext = edge.getCallSite().getContext();
+            Context calleeContext = csCallee.getContext();
+            Invoke callSite = edge.getCallSite().getCallSite();
+            IR calleeIR = csCallee.getMethod().getIR();
+            InvokeExp invokeExp = callSite.getInvokeExp();
+            for (int i = 0; i < invokeExp.getArgCount(); ++i) {
+                addPFGEdge(csManager.getCSVar(callerContext, invokeExp.getArg(i)),
+                        csManager.getCSVar(calleeContext, calleeIR.getParam(i)));
+            }
+            Var result = callSite.getResult();
+            if (result != null) {
+                CSVar csResult = csManager.getCSVar(callerContext, result);
+                for (Var ret : calleeIR.getReturnVars()) {
+                    addPFGEdge(csManager.getCSVar(calleeContext, ret), csResult);
+                }
+            }
+        }
     }
 
     /**
@@ -174,13 +476,25 @@ class Solver {
      * @return the resolved callee.
      */
     private JMethod resolveCallee(CSObj recv, Invoke callSite) {
-        Type type = recv != null ? recv.getObject().getType() : null;
-        return CallGraphs.resolveCallee(type, callSite);
+        if (recv == null) {
+            return CallGraphs.resolveCallee(null, callSite);
+        }
+        Type type = recv.getObject().getType();
+        JMethod callee = dispatchCache.getCallee(callSite, type);
+        return callee != null ? callee
+                : dispatchCache.resolveCallee(callSite, type);
     }
 
     PointerAnalysisResult getResult() {
         if (result == null) {
-            result = new PointerAnalysisResultImpl(csManager, callGraph);
+            result = new PointerAnalysisResultImpl(csManager, callGraph) {
+                @Override
+                public CallGraph<Invoke, JMethod> getCallGraph() {
+                    // reuse the projection maintained by the CS call graph
+                    // instead of rebuilding it from all CS edges
+                    return callGraph.getContextInsensitiveCallGraph();
+                }
+            };
         }
         return result;
     }
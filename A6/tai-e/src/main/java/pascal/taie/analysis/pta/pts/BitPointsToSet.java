@@ -0,0 +1,186 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.pts;
+
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.CSObjIndexer;
+import pascal.taie.util.collection.SparseBitSet;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link PointsToSet} stored as a bit set over the global indexes
+ * of {@link CSObj}, so that set operations do not need to hash the objects.
+ */
+class BitPointsToSet implements PointsToSet {
+
+    private final SparseBitSet set;
+
+    BitPointsToSet() {
+        this(new SparseBitSet());
+    }
+
+    BitPointsToSet(SparseBitSet set) {
+        this.set = set;
+    }
+
+    /**
+     * @return the bit set of given points-to set if it is stored
+     * as a bit set, otherwise null.
+     */
+    static SparseBitSet bitsOf(PointsToSet pts) {
+        if (pts instanceof BitPointsToSet bitPts) {
+            return bitPts.set;
+        }
+        if (pts instanceof SharedPointsToSet sharedPts) {
+            return sharedPts.bits();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean addObject(CSObj obj) {
+        return set.set(obj.getIndex());
+    }
+
+    @Override
+    public boolean addAll(PointsToSet pts) {
+        SparseBitSet bits = bitsOf(pts);
+        if (bits != null) {
+            return set.addAll(bits);
+        }
+        boolean changed = false;
+        for (CSObj obj : pts) {
+            changed |= addObject(obj);
+        }
+        return changed;
+    }
+
+    @Override
+    public PointsToSet addAllDiff(PointsToSet pts) {
+        SparseBitSet bits = bitsOf(pts);
+        if (bits != null) {
+            return new BitPointsToSet(set.addAllDiff(bits));
+        }
+        return PointsToSet.super.addAllDiff(pts);
+    }
+
+    @Override
+    public boolean contains(CSObj obj) {
+        return set.get(obj.getIndex());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return set.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return set.cardinality();
+    }
+
+    @Override
+    public Set<CSObj> getObjects() {
+        return asSet(set);
+    }
+
+    @Override
+    public Stream<CSObj> objects() {
+        return getObjects().stream();
+    }
+
+    @Override
+    public Iterator<CSObj> iterator() {
+        return iterator(set);
+    }
+
+    /**
+     * @return a set view of the objects in given bit set.
+     */
+    static Set<CSObj> asSet(SparseBitSet set) {
+        return new AbstractSet<>() {
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof CSObj obj && set.get(obj.getIndex());
+            }
+
+            @Override
+            public Iterator<CSObj> iterator() {
+                return BitPointsToSet.iterator(set);
+            }
+
+            @Override
+            public int size() {
+                return set.cardinality();
+            }
+        };
+    }
+
+    /**
+     * @return an iterator over the objects in given bit set.
+     */
+    static Iterator<CSObj> iterator(SparseBitSet set) {
+        PrimitiveIterator.OfInt it = set.iterator();
+        return new Iterator<>() {
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public CSObj next() {
+                return CSObjIndexer.getCSObj(it.nextInt());
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PointsToSet that)) {
+            return false;
+        }
+        SparseBitSet bits = bitsOf(that);
+        return bits != null && set.equals(bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return set.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getObjects().toString();
+    }
+}
@@ -49,6 +49,22 @@ public interface PointsToSet extends Iterable<CSObj> {
      */
     boolean addAll(PointsToSet pts);
 
+    /**
+     * Adds all objects in given pts to this set.
+     *
+     * @return the objects that are in given pts but were not
+     * in this set before the call.
+     */
+    default PointsToSet addAllDiff(PointsToSet pts) {
+        PointsToSet diff = PointsToSetFactory.make();
+        for (CSObj obj : pts) {
+            if (addObject(obj)) {
+                diff.addObject(obj);
+            }
+        }
+        return diff;
+    }
+
     /**
      * @return true if this set contains given object, otherwise false.
      */
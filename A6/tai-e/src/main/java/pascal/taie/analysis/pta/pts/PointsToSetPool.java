@@ -0,0 +1,141 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.pts;
+
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.SparseBitSet;
+
+import java.util.Map;
+
+/**
+ * Pool of points-to sets whose contents can be shared by the sets of
+ * equal contents, which saves memory for long-living sets, e.g.,
+ * the points-to sets of context-sensitive variables.
+ * <p>
+ * The sets made by a pool start with the shared empty contents.
+ * {@link #share(PointsToSet)} interns the contents of a set, i.e.,
+ * looks up the canonical contents in the table of the pool, which
+ * counts the references to each canonical contents and drops the ones
+ * that are no longer referenced. A shared set copies its contents back
+ * to private ones when it is modified, so a set should be shared again
+ * after each update, e.g., the solver shares the set of a variable
+ * whenever it absorbs new objects. Then a set keeps private contents
+ * only while being updated, and the sets of equal contents, e.g.,
+ * the sets of a variable under different contexts, hold one copy of
+ * the contents during the analysis, at the price of copying the
+ * contents on each update. A set that is discarded should be released
+ * by {@link #release(PointsToSet)}.
+ * <p>
+ * Each pool has its own table, which is freed with the pool.
+ * This class is thread-safe.
+ */
+public class PointsToSetPool {
+
+    /**
+     * Map from contents to their canonical entries.
+     */
+    private final Map<SparseBitSet, Entry> table = Maps.newMap();
+
+    /**
+     * Contents of the empty sets, which are never modified.
+     */
+    private final SparseBitSet empty = new SparseBitSet();
+
+    /**
+     * @return a new empty points-to set of this pool, whose contents
+     * are shared.
+     */
+    public PointsToSet make() {
+        return new SharedPointsToSet(this, acquire(empty));
+    }
+
+    /**
+     * Shares the contents of given set with the other sets of the same
+     * pool. It has no effect on the sets that are not made by a pool.
+     */
+    public static void share(PointsToSet pts) {
+        if (pts instanceof SharedPointsToSet sharedPts) {
+            sharedPts.share();
+        }
+    }
+
+    /**
+     * Releases the shared contents of given set, which makes the contents
+     * private again. It has no effect on the sets that are not made by
+     * a pool, or whose contents are not shared.
+     */
+    public static void release(PointsToSet pts) {
+        if (pts instanceof SharedPointsToSet sharedPts) {
+            sharedPts.release();
+        }
+    }
+
+    /**
+     * @return the number of distinct contents shared in this pool.
+     */
+    public synchronized int getNumberOfSharedContents() {
+        return table.size();
+    }
+
+    /**
+     * @return the canonical entry of given contents, whose reference
+     * count is increased. The contents must not be modified afterwards.
+     */
+    synchronized Entry acquire(SparseBitSet set) {
+        Entry entry = table.computeIfAbsent(set, Entry::new);
+        ++entry.refCount;
+        return entry;
+    }
+
+    synchronized void release(Entry entry) {
+        if (--entry.refCount == 0) {
+            table.remove(entry.set);
+        }
+    }
+
+    /**
+     * Canonical contents with their reference count.
+     */
+    static class Entry {
+
+        private final SparseBitSet set;
+
+        private final int hash;
+
+        private int refCount;
+
+        private Entry(SparseBitSet set) {
+            this.set = set;
+            this.hash = set.hashCode();
+        }
+
+        SparseBitSet set() {
+            return set;
+        }
+
+        int hash() {
+            return hash;
+        }
+    }
+}
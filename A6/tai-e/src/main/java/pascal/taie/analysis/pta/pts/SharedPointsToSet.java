@@ -0,0 +1,194 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.pts;
+
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.util.collection.SparseBitSet;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link PointsToSet} made by a {@link PointsToSetPool}, whose contents
+ * are either private to the set or shared with the other sets of equal
+ * contents in the pool.
+ * <p>
+ * Private contents are updated in place, so that building a set costs
+ * the same as building a {@link BitPointsToSet}. Shared contents are
+ * never modified: the first modification after sharing copies them
+ * back to private contents.
+ */
+class SharedPointsToSet implements PointsToSet {
+
+    private final PointsToSetPool pool;
+
+    /**
+     * Private contents of this set, or null if the contents are shared.
+     */
+    @Nullable
+    private SparseBitSet bits;
+
+    /**
+     * Shared contents of this set, or null if the contents are private.
+     */
+    @Nullable
+    private PointsToSetPool.Entry entry;
+
+    SharedPointsToSet(PointsToSetPool pool, PointsToSetPool.Entry entry) {
+        this.pool = pool;
+        this.entry = entry;
+    }
+
+    /**
+     * @return the current contents of this set, which must not be modified.
+     */
+    SparseBitSet bits() {
+        return bits != null ? bits : entry.set();
+    }
+
+    /**
+     * @return the private contents of this set, which are copied from
+     * the shared contents if necessary.
+     */
+    private SparseBitSet mutableBits() {
+        if (bits == null) {
+            bits = entry.set().copy();
+            pool.release(entry);
+            entry = null;
+        }
+        return bits;
+    }
+
+    void share() {
+        if (bits != null) {
+            entry = pool.acquire(bits);
+            bits = null;
+        }
+    }
+
+    void release() {
+        if (entry != null) {
+            mutableBits();
+        }
+    }
+
+    boolean isShared() {
+        return entry != null;
+    }
+
+    @Override
+    public boolean addObject(CSObj obj) {
+        if (contains(obj)) {
+            return false;
+        }
+        return mutableBits().set(obj.getIndex());
+    }
+
+    @Override
+    public boolean addAll(PointsToSet pts) {
+        if (pts.isEmpty()) {
+            return false;
+        }
+        SparseBitSet other = BitPointsToSet.bitsOf(pts);
+        SparseBitSet set = mutableBits();
+        if (other != null) {
+            return set.addAll(other);
+        }
+        boolean changed = false;
+        for (CSObj obj : pts) {
+            changed |= set.set(obj.getIndex());
+        }
+        return changed;
+    }
+
+    @Override
+    public PointsToSet addAllDiff(PointsToSet pts) {
+        SparseBitSet other = BitPointsToSet.bitsOf(pts);
+        if (other == null) {
+            return PointsToSet.super.addAllDiff(pts);
+        }
+        if (other.isEmpty()) {
+            return new BitPointsToSet();
+        }
+        return new BitPointsToSet(mutableBits().addAllDiff(other));
+    }
+
+    @Override
+    public boolean contains(CSObj obj) {
+        return bits().get(obj.getIndex());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bits().isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return bits().cardinality();
+    }
+
+    @Override
+    public Set<CSObj> getObjects() {
+        return BitPointsToSet.asSet(bits());
+    }
+
+    @Override
+    public Stream<CSObj> objects() {
+        return getObjects().stream();
+    }
+
+    @Override
+    public Iterator<CSObj> iterator() {
+        return BitPointsToSet.iterator(bits());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof SharedPointsToSet that &&
+                entry != null && that.entry != null && pool == that.pool) {
+            // shared contents of the same pool are canonical
+            return entry == that.entry;
+        }
+        if (!(o instanceof PointsToSet that)) {
+            return false;
+        }
+        SparseBitSet other = BitPointsToSet.bitsOf(that);
+        return other != null && bits().equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return entry != null ? entry.hash() : bits.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getObjects().toString();
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.toolkit.mahjong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.analysis.pta.PointerAnalysisResult;
+import pascal.taie.analysis.pta.core.cs.element.ArrayIndex;
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.InstanceField;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.stmt.New;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.Sets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the allocation sites whose objects can be merged in the manner
+ * of Mahjong.
+ * <p>
+ * Based on a context-insensitive pointer analysis result, this class
+ * builds the field points-to graph (FPG), whose nodes are the abstract
+ * objects and whose edges "o1 -f-> o2" mean that field f of o1 points
+ * to o2 (array elements are treated as one field). Two objects are
+ * merged if they are equivalent in the FPG: they have the same type,
+ * and for each field, the objects pointed to by the field of one are
+ * equivalent to those of the other. Such objects are type-consistent,
+ * i.e., the objects reached from them by any field path have the same
+ * types, so merging them does not affect type-dependent clients such
+ * as call graph construction and may-fail casting.
+ * <p>
+ * The equivalence is computed by partition refinement: starting from
+ * the partition by type, blocks are split by the blocks of the objects
+ * pointed to by each field until the partition is stable. Only the
+ * objects allocated by new statements are merged.
+ */
+public class Mahjong {
+
+    private static final Logger logger = LogManager.getLogger(Mahjong.class);
+
+    /**
+     * Pseudo field of array elements in the FPG.
+     */
+    private static final Object ARRAY_INDEX = "[*]";
+
+    private final PointerAnalysisResult pta;
+
+    public Mahjong(PointerAnalysisResult pta) {
+        this.pta = pta;
+    }
+
+    /**
+     * @return the groups of allocation sites whose objects can be merged.
+     * Each group contains at least two allocation sites.
+     */
+    public List<Set<New>> selectMergeableSites() {
+        List<Obj> objs = new ArrayList<>(pta.getObjects());
+        Map<Obj, Integer> indexes = Maps.newMap(objs.size());
+        for (Obj obj : objs) {
+            indexes.put(obj, indexes.size());
+        }
+        List<Map<Object, Set<Obj>>> fpg = buildFPG(objs.size(), indexes);
+        int[] blocks = refine(objs, indexes, fpg);
+        Map<Integer, Set<New>> groups = Maps.newMap();
+        for (int i = 0; i < objs.size(); ++i) {
+            if (objs.get(i).getAllocation() instanceof New allocSite) {
+                groups.computeIfAbsent(blocks[i], unused -> Sets.newHybridSet())
+                        .add(allocSite);
+            }
+        }
+        List<Set<New>> mergeable = new ArrayList<>();
+        int nMerged = 0;
+        for (Set<New> group : groups.values()) {
+            if (group.size() > 1) {
+                mergeable.add(group);
+                nMerged += group.size();
+            }
+        }
+        logger.info("#objects: {}, #merged objects: {} (into {} objects)",
+                objs.size(), nMerged, mergeable.size());
+        return mergeable;
+    }
+
+    /**
+     * @return the FPG, where the i-th map gives the objects pointed to
+     * by each field of the i-th object.
+     */
+    private List<Map<Object, Set<Obj>>> buildFPG(int nObjs, Map<Obj, Integer> indexes) {
+        List<Map<Object, Set<Obj>>> fpg = new ArrayList<>(nObjs);
+        for (int i = 0; i < nObjs; ++i) {
+            fpg.add(Map.of());
+        }
+        for (InstanceField field : pta.getInstanceFields()) {
+            addEdges(fpg, indexes, field.getBase(), field.getField(),
+                    field.getPointsToSet().getObjects());
+        }
+        for (ArrayIndex array : pta.getArrayIndexes()) {
+            addEdges(fpg, indexes, array.getArray(), ARRAY_INDEX,
+                    array.getPointsToSet().getObjects());
+        }
+        return fpg;
+    }
+
+    private static void addEdges(List<Map<Object, Set<Obj>>> fpg,
+                                 Map<Obj, Integer> indexes, CSObj base,
+                                 Object field, Set<CSObj> targets) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        int index = indexes.get(base.getObject());
+        Map<Object, Set<Obj>> fields = fpg.get(index);
+        if (fields.isEmpty()) {
+            fields = Maps.newHybridMap();
+            fpg.set(index, fields);
+        }
+        Set<Obj> objs = fields.computeIfAbsent(field, unused -> Sets.newHybridSet());
+        targets.forEach(target -> objs.add(target.getObject()));
+    }
+
+    /**
+     * @return the block of each object in the stable partition.
+     */
+    private static int[] refine(List<Obj> objs, Map<Obj, Integer> indexes,
+                                List<Map<Object, Set<Obj>>> fpg) {
+        int nObjs = objs.size();
+        int[] blocks = new int[nObjs];
+        // initial partition: objects of new statements by type,
+        // and each of the other objects on its own
+        Map<Object, Integer> initial = Maps.newMap();
+        for (int i = 0; i < nObjs; ++i) {
+            Obj obj = objs.get(i);
+            Object key = obj.getAllocation() instanceof New ? obj.getType() : obj;
+            blocks[i] = initial.computeIfAbsent(key, unused -> initial.size());
+        }
+        int nBlocks = initial.size();
+        while (true) {
+            Map<Signature, Integer> signatures = Maps.newMap(nBlocks);
+            int[] newBlocks = new int[nObjs];
+            for (int i = 0; i < nObjs; ++i) {
+                Map<Object, Set<Integer>> fieldBlocks = Maps.newMap(fpg.get(i).size());
+                for (var e : fpg.get(i).entrySet()) {
+                    Set<Integer> targetBlocks = Sets.newHybridSet();
+                    for (Obj target : e.getValue()) {
+                        targetBlocks.add(blocks[indexes.get(target)]);
+                    }
+                    fieldBlocks.put(e.getKey(), targetBlocks);
+                }
+                Signature signature = new Signature(blocks[i], fieldBlocks);
+                newBlocks[i] = signatures.computeIfAbsent(
+                        signature, unused -> signatures.size());
+            }
+            blocks = newBlocks;
+            // each round only splits blocks, thus the partition is
+            // stable when the number of blocks does not change
+            if (signatures.size() == nBlocks) {
+                return blocks;
+            }
+            nBlocks = signatures.size();
+        }
+    }
+
+    /**
+     * Signature of an object in a round of refinement: its current block
+     * and the blocks of the objects pointed to by each of its fields.
+     */
+    private record Signature(int block, Map<Object, Set<Integer>> fieldBlocks) {
+    }
+}
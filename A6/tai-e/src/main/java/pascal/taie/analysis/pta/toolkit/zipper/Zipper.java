@@ -0,0 +1,345 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.toolkit.zipper;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
+import pascal.taie.analysis.pta.PointerAnalysisResult;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.analysis.pta.toolkit.PointerAnalysisResultEx;
+import pascal.taie.analysis.pta.toolkit.PointerAnalysisResultExImpl;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.InstanceFieldAccess;
+import pascal.taie.ir.exp.InvokeExp;
+import pascal.taie.ir.exp.InvokeInstanceExp;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Cast;
+import pascal.taie.ir.stmt.Copy;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.LoadArray;
+import pascal.taie.ir.stmt.LoadField;
+import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.ir.stmt.StoreArray;
+import pascal.taie.ir.stmt.StoreField;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.type.ReferenceType;
+import pascal.taie.language.type.Type;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.Sets;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds precision-critical methods in the manner of Zipper.
+ * <p>
+ * Based on a context-insensitive pointer analysis result, this class
+ * builds an object flow graph (OFG) over variables, instance fields
+ * and array indexes of abstract objects. For each type of objects,
+ * the objects passed into the methods invoked on the objects of the
+ * type (IN methods), and then returned by these methods (OUT methods),
+ * may be merged when the methods are analyzed context-insensitively.
+ * The methods on the flow paths from the parameters of IN methods to
+ * the return variables of OUT methods are precision-critical, and
+ * only these methods need context sensitivity.
+ * <p>
+ * The flow paths of each type are searched in the precision flow graph
+ * (PFG) of the type, i.e., the part of the OFG reachable from the
+ * parameters of its IN methods, where the flows stop at the returns of
+ * its OUT methods. As the OFG is context-insensitive, a return edge
+ * leads from a callee to all its callers, thus the PFG only takes the
+ * return edges to the methods of the type and to the methods that the
+ * flows have entered by other edges. Otherwise, a flow into any widely
+ * used method would leak to all callers of the method, and most methods
+ * of the program would become precision-critical.
+ */
+public class Zipper {
+
+    private static final Logger logger = LogManager.getLogger(Zipper.class);
+
+    private final PointerAnalysisResultEx pta;
+
+    /**
+     * Successors of each OFG node via the edges other than return edges.
+     */
+    private final MultiMap<Node, Node> succs = Maps.newMultiMap();
+
+    /**
+     * Successors of each return variable via return edges, i.e.,
+     * the variables receiving the results at the call sites.
+     */
+    private final MultiMap<Node, Node> returnSuccs = Maps.newMultiMap();
+
+    /**
+     * Wrapped and unwrapped flows, i.e., the edges from the variables
+     * stored to fields or arrays to the bases of the stores, and from
+     * the bases of loads to the variables receiving the loaded values.
+     */
+    private final MultiMap<Node, Node> wrapFlows = Maps.newMultiMap();
+
+    public Zipper(PointerAnalysisResult pta) {
+        this.pta = new PointerAnalysisResultExImpl(pta);
+    }
+
+    /**
+     * @return the precision-critical methods.
+     */
+    public Set<JMethod> selectPrecisionCriticalMethods() {
+        CallGraph<Invoke, JMethod> callGraph = pta.getBase().getCallGraph();
+        callGraph.reachableMethods().forEach(this::buildOFG);
+        MultiMap<Type, JMethod> typeMethods = Maps.newMultiMap();
+        for (Obj obj : pta.getBase().getObjects()) {
+            typeMethods.putAll(obj.getType(), pta.getMethodsInvokedOn(obj));
+        }
+        Set<JMethod> pcms = Sets.newConcurrentSet();
+        typeMethods.keySet()
+                .parallelStream()
+                .forEach(type -> pcms.addAll(
+                        getPrecisionCriticalMethods(typeMethods.get(type))));
+        int nMethods = callGraph.getNumberOfMethods();
+        logger.info("#precision-critical methods: {} of {} ({}%)",
+                pcms.size(), nMethods, String.format("%.2f",
+                        nMethods == 0 ? 0.0 : 100.0 * pcms.size() / nMethods));
+        return pcms;
+    }
+
+    /**
+     * Adds the OFG edges of the statements in given method.
+     */
+    private void buildOFG(JMethod method) {
+        CallGraph<Invoke, JMethod> callGraph = pta.getBase().getCallGraph();
+        for (Stmt stmt : method.getIR()) {
+            if (stmt instanceof Copy copy) {
+                addEdge(copy.getRValue(), copy.getLValue());
+            } else if (stmt instanceof Cast cast) {
+                addEdge(cast.getRValue().getValue(), cast.getLValue());
+            } else if (stmt instanceof LoadField load && !load.isStatic()) {
+                Var base = ((InstanceFieldAccess)
+                        load.getFieldAccess()).getBase();
+                JField field = load.getFieldRef().resolve();
+                for (Obj obj : pta.getBase().getPointsToSet(base)) {
+                    addEdge(new FieldNode(obj, field), new VarNode(load.getLValue()));
+                }
+                addEdge(new VarNode(base), new VarNode(load.getLValue()), wrapFlows);
+            } else if (stmt instanceof StoreField store && !store.isStatic()) {
+                Var base = ((InstanceFieldAccess)
+                        store.getFieldAccess()).getBase();
+                JField field = store.getFieldRef().resolve();
+                for (Obj obj : pta.getBase().getPointsToSet(base)) {
+                    addEdge(new VarNode(store.getRValue()), new FieldNode(obj, field));
+                }
+                addEdge(new VarNode(store.getRValue()), new VarNode(base), wrapFlows);
+            } else if (stmt instanceof LoadArray load) {
+                Var base = load.getArrayAccess().getBase();
+                for (Obj obj : pta.getBase().getPointsToSet(base)) {
+                    addEdge(new ArrayNode(obj), new VarNode(load.getLValue()));
+                }
+                addEdge(new VarNode(base), new VarNode(load.getLValue()), wrapFlows);
+            } else if (stmt instanceof StoreArray store) {
+                Var base = store.getArrayAccess().getBase();
+                for (Obj obj : pta.getBase().getPointsToSet(base)) {
+                    addEdge(new VarNode(store.getRValue()), new ArrayNode(obj));
+                }
+                addEdge(new VarNode(store.getRValue()), new VarNode(base), wrapFlows);
+            } else if (stmt instanceof Invoke callSite) {
+                for (JMethod callee : callGraph.getCalleesOf(callSite)) {
+                    addCallEdges(callSite, callee);
+                }
+            }
+        }
+    }
+
+    private void addCallEdges(Invoke callSite, JMethod callee) {
+        IR calleeIR = callee.getIR();
+        InvokeExp invokeExp = callSite.getInvokeExp();
+        for (int i = 0; i < invokeExp.getArgCount(); ++i) {
+            addEdge(invokeExp.getArg(i), calleeIR.getParam(i));
+        }
+        if (invokeExp instanceof InvokeInstanceExp instanceExp
+                && calleeIR.getThis() != null) {
+            addEdge(instanceExp.getBase(), calleeIR.getThis());
+        }
+        Var result = callSite.getResult();
+        if (result != null) {
+            for (Var ret : calleeIR.getReturnVars()) {
+                addEdge(new VarNode(ret), new VarNode(result), returnSuccs);
+            }
+        }
+    }
+
+    private void addEdge(Var source, Var target) {
+        addEdge(new VarNode(source), new VarNode(target));
+    }
+
+    private void addEdge(Node source, Node target) {
+        addEdge(source, target, succs);
+    }
+
+    private static void addEdge(Node source, Node target, MultiMap<Node, Node> edges) {
+        if (isConcerned(source) && isConcerned(target)) {
+            edges.put(source, target);
+        }
+    }
+
+    private static boolean isConcerned(Node node) {
+        return !(node instanceof VarNode varNode)
+                || varNode.var().getType() instanceof ReferenceType;
+    }
+
+    /**
+     * @return the precision-critical methods for the type whose objects
+     * are the receivers of given methods.
+     */
+    private Set<JMethod> getPrecisionCriticalMethods(Collection<JMethod> methods) {
+        Set<Node> ins = Sets.newHybridSet();
+        Set<Node> outs = Sets.newHybridSet();
+        for (JMethod method : methods) {
+            IR ir = method.getIR();
+            ir.getParams().forEach(p -> ins.add(new VarNode(p)));
+            ir.getReturnVars().forEach(r -> outs.add(new VarNode(r)));
+        }
+        MultiMap<Node, Node> pfgPreds = buildPFG(methods, ins, outs);
+        // the precision-critical methods are the ones on the PFG paths
+        // that end at the returns of OUT methods, i.e., the methods of
+        // the PFG nodes that reach OUT methods' returns backwards
+        Set<Node> reached = Sets.newSet();
+        Deque<Node> workList = new ArrayDeque<>();
+        for (Node out : outs) {
+            if (pfgPreds.containsKey(out)) {
+                reached.add(out);
+                workList.add(out);
+            }
+        }
+        while (!workList.isEmpty()) {
+            Node node = workList.poll();
+            if (ins.contains(node)) {
+                continue;
+            }
+            for (Node pred : pfgPreds.get(node)) {
+                if (reached.add(pred)) {
+                    workList.add(pred);
+                }
+            }
+        }
+        Set<JMethod> pcms = Sets.newHybridSet();
+        for (Node node : reached) {
+            if (node instanceof VarNode varNode) {
+                pcms.add(varNode.var().getMethod());
+            }
+        }
+        return pcms;
+    }
+
+    /**
+     * Builds the PFG of the type whose objects are the receivers of
+     * given methods, from the parameters of the methods (ins).
+     * The flows stop at the returns of the methods (outs), i.e., they do
+     * not leave the methods of the type. A return edge is taken only if
+     * the caller is a method of the type, or the flows have entered the
+     * caller by the other edges. In the methods of the type, the flows
+     * also pass from the stored objects to the objects that wrap them,
+     * and from the objects to the objects unwrapped from them.
+     *
+     * @return the predecessors of each node in the PFG.
+     */
+    private MultiMap<Node, Node> buildPFG(Collection<JMethod> methods,
+                                          Set<Node> ins, Set<Node> outs) {
+        MultiMap<Node, Node> pfgPreds = Maps.newMultiMap();
+        Set<JMethod> entered = Sets.newHybridSet(methods);
+        // return edges waiting for the flows to enter their callers
+        MultiMap<JMethod, Node> pendingReturns = Maps.newMultiMap();
+        Set<Node> reached = Sets.newSet();
+        reached.addAll(ins);
+        Deque<Node> workList = new ArrayDeque<>(ins);
+        while (!workList.isEmpty()) {
+            Node node = workList.poll();
+            if (!ins.contains(node) && outs.contains(node)) {
+                continue;
+            }
+            List<Node> nexts = new ArrayList<>(succs.get(node));
+            if (node instanceof VarNode varNode &&
+                    methods.contains(varNode.var().getMethod())) {
+                nexts.addAll(wrapFlows.get(node));
+            }
+            for (Node result : returnSuccs.get(node)) {
+                if (entered.contains(getMethod(result))) {
+                    nexts.add(result);
+                } else {
+                    pendingReturns.put(getMethod(result), node);
+                }
+            }
+            for (Node next : nexts) {
+                pfgPreds.put(next, node);
+                if (reached.add(next)) {
+                    workList.add(next);
+                }
+                JMethod method = getMethod(next);
+                if (method != null && entered.add(method)) {
+                    // resume the return edges to the newly entered method
+                    for (Node ret : pendingReturns.get(method)) {
+                        for (Node result : returnSuccs.get(ret)) {
+                            if (method.equals(getMethod(result))) {
+                                pfgPreds.put(result, ret);
+                                if (reached.add(result)) {
+                                    workList.add(result);
+                                }
+                            }
+                        }
+                    }
+                    pendingReturns.removeAll(method);
+                }
+            }
+        }
+        return pfgPreds;
+    }
+
+    /**
+     * @return the method containing given node, or null if the node
+     * is not a variable.
+     */
+    @Nullable
+    private static JMethod getMethod(Node node) {
+        return node instanceof VarNode varNode ? varNode.var().getMethod() : null;
+    }
+
+    private interface Node {
+    }
+
+    private record VarNode(Var var) implements Node {
+    }
+
+    private record FieldNode(Obj base, JField field) implements Node {
+    }
+
+    private record ArrayNode(Obj array) implements Node {
+    }
+}
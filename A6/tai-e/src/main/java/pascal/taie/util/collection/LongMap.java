@@ -0,0 +1,202 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.util.collection;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * Map from non-negative long keys to values, which stores the keys
+ * in a primitive array with open addressing (linear probing), so that
+ * it needs no entry objects or boxed keys. Values may be null.
+ * Negative keys cannot be put into the map, and they are always absent.
+ *
+ * @param <V> type of values
+ */
+public class LongMap<V> {
+
+    /**
+     * Marks the empty slots; valid keys are non-negative.
+     */
+    private static final long EMPTY = -1L;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    public LongMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongMap(int initialCapacity) {
+        int capacity = Integer.highestOneBit(
+                Math.max(DEFAULT_CAPACITY, initialCapacity * 2 - 1));
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        // negative keys, e.g., EMPTY, would match the empty slots
+        return key >= 0 && keys[slotOf(key)] == key;
+    }
+
+    /**
+     * @return the value of given key, or null if the key is absent
+     * (or mapped to null).
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key < 0) {
+            return null;
+        }
+        int i = slotOf(key);
+        return keys[i] == key ? (V) values[i] : null;
+    }
+
+    /**
+     * Associates the value with the key.
+     *
+     * @return true if the key was absent before this call, otherwise false.
+     */
+    public boolean put(long key, V value) {
+        checkKey(key);
+        int i = slotOf(key);
+        values[i] = value;
+        if (keys[i] == key) {
+            return false;
+        }
+        keys[i] = key;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return true;
+    }
+
+    /**
+     * @return the value of given key. If the key is absent, computes its
+     * value by the function and puts it into this map.
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(long key, LongFunction<? extends V> function) {
+        checkKey(key);
+        int i = slotOf(key);
+        if (keys[i] == key) {
+            return (V) values[i];
+        }
+        V value = function.apply(key);
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * Removes the key from this map.
+     *
+     * @return true if the key was present before this call, otherwise false.
+     */
+    public boolean remove(long key) {
+        if (key < 0) {
+            return false;
+        }
+        int i = slotOf(key);
+        if (keys[i] != key) {
+            return false;
+        }
+        // backward-shift deletion, which keeps probe sequences
+        // without tombstones
+        int mask = keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY) {
+                break;
+            }
+            int home = hash(keys[j]) & mask;
+            // move the entry at j to i if i lies on its probe sequence
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY;
+        values[i] = null;
+        --size;
+        return true;
+    }
+
+    /**
+     * @return the slot that holds the key, or the empty slot where
+     * the key should be inserted.
+     */
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != key && keys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[keys.length];
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != EMPTY) {
+                int j = slotOf(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        // mixes the bits of the key (from MurmurHash3's finalizer)
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static void checkKey(long key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("key < 0: " + key);
+        }
+    }
+}
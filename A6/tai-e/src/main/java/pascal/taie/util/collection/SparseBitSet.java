@@ -0,0 +1,325 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.util.collection;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.StringJoiner;
+import java.util.function.IntConsumer;
+
+/**
+ * Sparse bit set of non-negative integers.
+ * <p>
+ * Bits are kept in 64-bit words, and only non-zero words are stored,
+ * sorted by their word index. Bulk operations merge two sets word by
+ * word, so they never touch the elements individually.
+ */
+public class SparseBitSet {
+
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+
+    private static final int DEFAULT_CAPACITY = 2;
+
+    /**
+     * Indexes of the stored words, in ascending order.
+     */
+    private int[] keys;
+
+    /**
+     * Stored words; {@code words[i]} holds the bits of word {@code keys[i]}.
+     */
+    private long[] words;
+
+    /**
+     * Number of stored words.
+     */
+    private int wordCount;
+
+    /**
+     * Number of set bits.
+     */
+    private int cardinality;
+
+    public SparseBitSet() {
+        keys = new int[DEFAULT_CAPACITY];
+        words = new long[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Sets the given bit.
+     *
+     * @return true if the bit was not set before this call, otherwise false.
+     */
+    public boolean set(int bit) {
+        checkIndex(bit);
+        int key = bit >>> ADDRESS_BITS_PER_WORD;
+        long mask = 1L << bit;
+        int i = Arrays.binarySearch(keys, 0, wordCount, key);
+        if (i >= 0) {
+            if ((words[i] & mask) != 0) {
+                return false;
+            }
+            words[i] |= mask;
+        } else {
+            insertWord(-(i + 1), key, mask);
+        }
+        ++cardinality;
+        return true;
+    }
+
+    /**
+     * @return true if the given bit is set, otherwise false.
+     */
+    public boolean get(int bit) {
+        if (bit < 0) {
+            return false;
+        }
+        int i = Arrays.binarySearch(keys, 0, wordCount,
+                bit >>> ADDRESS_BITS_PER_WORD);
+        return i >= 0 && (words[i] & (1L << bit)) != 0;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * @return the number of set bits.
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Sets all bits that are set in the given bit set.
+     *
+     * @return true if this set changed as a result of the call, otherwise false.
+     */
+    public boolean addAll(SparseBitSet other) {
+        int oldCardinality = cardinality;
+        merge(other, null);
+        return cardinality != oldCardinality;
+    }
+
+    /**
+     * Sets all bits that are set in the given bit set, in one pass.
+     *
+     * @return the bits that were newly set by this call, i.e.,
+     * the bits of {@code other} that were not in this set before.
+     */
+    public SparseBitSet addAllDiff(SparseBitSet other) {
+        SparseBitSet diff = new SparseBitSet();
+        merge(other, diff);
+        return diff;
+    }
+
+    /**
+     * @return a copy of this bit set.
+     */
+    public SparseBitSet copy() {
+        SparseBitSet copy = new SparseBitSet();
+        copy.keys = Arrays.copyOf(keys, Math.max(wordCount, DEFAULT_CAPACITY));
+        copy.words = Arrays.copyOf(words, Math.max(wordCount, DEFAULT_CAPACITY));
+        copy.wordCount = wordCount;
+        copy.cardinality = cardinality;
+        return copy;
+    }
+
+    /**
+     * Performs the given action for each set bit, in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < wordCount; ++i) {
+            int base = keys[i] << ADDRESS_BITS_PER_WORD;
+            long word = words[i];
+            while (word != 0) {
+                action.accept(base + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * @return an iterator over the set bits, in ascending order.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+
+            private int index = 0;
+
+            private long word = wordCount > 0 ? words[0] : 0;
+
+            @Override
+            public boolean hasNext() {
+                while (word == 0 && index + 1 < wordCount) {
+                    word = words[++index];
+                }
+                return word != 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int bit = (keys[index] << ADDRESS_BITS_PER_WORD)
+                        + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return bit;
+            }
+        };
+    }
+
+    /**
+     * Merges {@code other} into this set. If {@code diff} is not null,
+     * the newly-set bits are appended to it.
+     */
+    private void merge(SparseBitSet other, SparseBitSet diff) {
+        if (other == this || other.wordCount == 0) {
+            return;
+        }
+        int n = wordCount, m = other.wordCount;
+        int missing = 0;
+        for (int i = 0, j = 0; j < m; ) {
+            if (i < n && keys[i] < other.keys[j]) {
+                ++i;
+            } else {
+                if (i >= n || keys[i] != other.keys[j]) {
+                    ++missing;
+                } else {
+                    ++i;
+                }
+                ++j;
+            }
+        }
+        if (missing == 0) {
+            // all words of other are present in this set: update in place
+            for (int i = 0, j = 0; j < m; ++i) {
+                if (keys[i] == other.keys[j]) {
+                    long added = other.words[j] & ~words[i];
+                    if (added != 0) {
+                        words[i] |= added;
+                        cardinality += Long.bitCount(added);
+                        if (diff != null) {
+                            diff.appendWord(keys[i], added);
+                        }
+                    }
+                    ++j;
+                }
+            }
+            return;
+        }
+        int[] newKeys = new int[n + missing];
+        long[] newWords = new long[n + missing];
+        int i = 0, j = 0, k = 0;
+        while (i < n || j < m) {
+            if (j >= m || (i < n && keys[i] < other.keys[j])) {
+                newKeys[k] = keys[i];
+                newWords[k++] = words[i++];
+            } else {
+                int key = other.keys[j];
+                long word = i < n && keys[i] == key ? words[i++] : 0;
+                long added = other.words[j++] & ~word;
+                if (added != 0) {
+                    cardinality += Long.bitCount(added);
+                    if (diff != null) {
+                        diff.appendWord(key, added);
+                    }
+                }
+                newKeys[k] = key;
+                newWords[k++] = word | added;
+            }
+        }
+        keys = newKeys;
+        words = newWords;
+        wordCount = k;
+    }
+
+    /**
+     * Inserts a new word at the given position.
+     */
+    private void insertWord(int pos, int key, long word) {
+        ensureCapacity(wordCount + 1);
+        System.arraycopy(keys, pos, keys, pos + 1, wordCount - pos);
+        System.arraycopy(words, pos, words, pos + 1, wordCount - pos);
+        keys[pos] = key;
+        words[pos] = word;
+        ++wordCount;
+    }
+
+    /**
+     * Appends a word whose index is greater than that of all stored words.
+     */
+    private void appendWord(int key, long word) {
+        ensureCapacity(wordCount + 1);
+        keys[wordCount] = key;
+        words[wordCount++] = word;
+        cardinality += Long.bitCount(word);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > keys.length) {
+            int newCapacity = Math.max(capacity, keys.length + (keys.length >> 1));
+            keys = Arrays.copyOf(keys, newCapacity);
+            words = Arrays.copyOf(words, newCapacity);
+        }
+    }
+
+    private static void checkIndex(int bit) {
+        if (bit < 0) {
+            throw new IndexOutOfBoundsException("bit < 0: " + bit);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SparseBitSet that)) {
+            return false;
+        }
+        return cardinality == that.cardinality &&
+                Arrays.equals(keys, 0, wordCount, that.keys, 0, that.wordCount) &&
+                Arrays.equals(words, 0, wordCount, that.words, 0, that.wordCount);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < wordCount; ++i) {
+            h = 31 * h + keys[i];
+            h = 31 * h + Long.hashCode(words[i]);
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        forEach(bit -> joiner.add(Integer.toString(bit)));
+        return joiner.toString();
+    }
+}
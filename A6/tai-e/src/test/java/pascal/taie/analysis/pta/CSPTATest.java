@@ -22,8 +22,27 @@
 
 package pascal.taie.analysis.pta;
 
+import org.junit.Assert;
 import org.junit.Test;
+import pascal.taie.Main;
+import pascal.taie.World;
 import pascal.taie.analysis.Tests;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
+import pascal.taie.analysis.pta.core.cs.selector.IntrospectiveSelector;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.analysis.pta.cs.CSPTA;
+import pascal.taie.analysis.pta.toolkit.mahjong.Mahjong;
+import pascal.taie.analysis.pta.toolkit.zipper.Zipper;
+import pascal.taie.config.ConfigException;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.New;
+import pascal.taie.language.classes.JMethod;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 public class CSPTATest {
 
@@ -84,6 +103,11 @@ public class CSPTATest {
         Tests.testCSPTA(DIR, "TwoType", "cs:2-type");
     }
 
+    @Test
+    public void testMapBasedManager() {
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj;cs-manager:map");
+    }
+
     @Test
     public void testStaticField() {
         Tests.testCSPTA(DIR, "StaticField");
@@ -93,4 +117,172 @@ public class CSPTATest {
     public void testArray() {
         Tests.testCSPTA(DIR, "Array");
     }
+
+    @Test
+    public void testSuperCall() {
+        Main.main(new String[]{"-pp",
+                "-cp", "src/test/resources/pta/" + DIR,
+                "-m", "SuperCall",
+                "-a", CSPTA.ID + "=cs:ci;implicit-entries:false;only-app:true"});
+        PointerAnalysisResult result = World.get().getResult(CSPTA.ID);
+        CallGraph<Invoke, JMethod> callGraph = result.getCallGraph();
+        JMethod am = World.get().getClassHierarchy()
+                .getClass("SuperCallA").getDeclaredMethod("m");
+        JMethod bm = World.get().getClassHierarchy()
+                .getClass("SuperCallB").getDeclaredMethod("m");
+        // the virtual call in main and super.m() in SuperCallB.m() have
+        // the same receiver type and method reference, but different callees
+        Set<JMethod> calleesOfMain = callGraph.getCalleesOfM(
+                World.get().getMainMethod());
+        Assert.assertTrue(calleesOfMain.contains(bm));
+        Assert.assertFalse(calleesOfMain.contains(am));
+        Assert.assertEquals(Set.of(am), callGraph.getCalleesOfM(bm));
+    }
+
+    @Test
+    public void testScaler() {
+        Map<String, Set<String>> ci = getPointsToSets(analyze("TwoObject", "cs:ci"));
+        Map<String, Set<String>> _2obj = getPointsToSets(analyze("TwoObject", "cs:2-obj"));
+        // the default threshold of Scaler is far above the cost of
+        // this program, thus all methods are analyzed with 2-obj
+        Map<String, Set<String>> scaler = getPointsToSets(analyze("TwoObject", "cs:scaler"));
+        Assert.assertEquals(_2obj, scaler);
+        // with the smallest threshold, Scaler picks cheaper variants,
+        // whose results lie between the ones of 2-obj and CI
+        Map<String, Set<String>> cheap = getPointsToSets(
+                analyze("TwoObject", "cs:scaler;scaler-tst:0"));
+        assertSubsumes(ci, cheap);
+        assertSubsumes(cheap, _2obj);
+    }
+
+    @Test
+    public void testZipper() {
+        Map<String, Set<String>> ci = getPointsToSets(analyze("TwoObject", "cs:ci"));
+        Map<String, Set<String>> _2obj = getPointsToSets(analyze("TwoObject", "cs:2-obj"));
+        PointerAnalysisResult result = analyze("TwoObject", "cs:zipper");
+        Set<JMethod> pcms = result.getResult(Zipper.class.getName());
+        // Zipper must not select all methods, otherwise it is just 2-obj
+        Assert.assertTrue("#precision-critical methods: " + pcms.size(),
+                pcms.size() < result.getCallGraph().getNumberOfMethods());
+        Map<String, Set<String>> zipper = getPointsToSets(result);
+        assertSubsumes(ci, zipper);
+        assertSubsumes(zipper, _2obj);
+    }
+
+    @Test
+    public void testHeapDepth() {
+        // 2-obj gives the objects allocated in List.iterator() heap contexts
+        Assert.assertTrue(analyze("TwoObject", "cs:2-obj")
+                .getCSObjects()
+                .stream()
+                .anyMatch(obj -> obj.getContext().getLength() > 0));
+        PointerAnalysisResult result = analyze("TwoObject", "cs:2-obj;heap-depth:0");
+        result.getCSObjects().forEach(obj -> Assert.assertEquals(
+                obj.toString(), 0, obj.getContext().getLength()));
+        // methods remain context-sensitive
+        Assert.assertTrue(result.getCSVars()
+                .stream()
+                .anyMatch(var -> var.getContext().getLength() > 0));
+    }
+
+    @Test
+    public void testDemotion() {
+        Map<String, Set<String>> ci = getPointsToSets(analyze("TwoObject", "cs:ci"));
+        Map<String, Set<String>> _2obj = getPointsToSets(analyze("TwoObject", "cs:2-obj"));
+        // List.add() is called on two lists, thus it gets a second context
+        PointerAnalysisResult result = analyze("TwoObject",
+                "cs:2-obj;demote-contexts:1;demote-to:ci");
+        Set<JMethod> demoted = result.getResult(IntrospectiveSelector.class.getName());
+        JMethod add = World.get().getClassHierarchy()
+                .getClass("List").getDeclaredMethod("add");
+        Assert.assertTrue(demoted + " does not contain " + add,
+                demoted.contains(add));
+        Map<String, Set<String>> introspective = getPointsToSets(result);
+        assertSubsumes(ci, introspective);
+        assertSubsumes(introspective, _2obj);
+        // a points-to size threshold of 0 demotes the methods
+        // once their variables point to any object
+        demoted = analyze("TwoObject", "cs:2-obj;demote-pts-size:0")
+                .getResult(IntrospectiveSelector.class.getName());
+        Assert.assertFalse(demoted.isEmpty());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testDemotionInvalidOption() {
+        analyze("TwoObject", "cs:2-obj;demote-contexts:many");
+    }
+
+    @Test
+    public void testMahjong() {
+        Set<String> edges = getCallEdges(analyze("TwoObject", "cs:2-obj"));
+        PointerAnalysisResult result = analyze("TwoObject",
+                "cs:2-obj;heap-model:mahjong");
+        List<Set<New>> groups = result.getResult(Mahjong.class.getName());
+        // the two lists, and the two objects stored in them,
+        // are type-consistent, and the other sites are not merged
+        Set<String> types = groups.stream()
+                .map(group -> {
+                    Assert.assertEquals(group.toString(), 2, group.size());
+                    Set<String> groupTypes = group.stream()
+                            .map(site -> site.getRValue().getType().getName())
+                            .collect(Collectors.toSet());
+                    Assert.assertEquals(group.toString(), 1, groupTypes.size());
+                    return groupTypes.iterator().next();
+                })
+                .collect(Collectors.toSet());
+        Assert.assertEquals(Set.of("List", "java.lang.Object"), types);
+        Assert.assertEquals(2, groups.size());
+        // merging type-consistent objects keeps the call graph
+        Assert.assertEquals(edges, getCallEdges(result));
+    }
+
+    /**
+     * Runs CSPTA on given test case with given options.
+     */
+    private static PointerAnalysisResult analyze(String main, String options) {
+        Main.main(new String[]{"-pp",
+                "-cp", "src/test/resources/pta/" + DIR,
+                "-m", main,
+                "-a", CSPTA.ID + "=implicit-entries:false;only-app:true;" + options});
+        return World.get().getResult(CSPTA.ID);
+    }
+
+    /**
+     * @return the context-insensitive points-to sets of the variables
+     * in given result. Variables and objects are given by their string
+     * representations, so that the sets of different runs are comparable.
+     */
+    private static Map<String, Set<String>> getPointsToSets(PointerAnalysisResult result) {
+        Map<String, Set<String>> pointsToSets = new TreeMap<>();
+        result.getVars().forEach(var -> pointsToSets.put(
+                var.getMethod() + "/" + var.getName(),
+                result.getPointsToSet(var)
+                        .stream()
+                        .map(Obj::toString)
+                        .collect(Collectors.toSet())));
+        return pointsToSets;
+    }
+
+    /**
+     * @return the call edges in given result, given by the string
+     * representations of their call sites and callees.
+     */
+    private static Set<String> getCallEdges(PointerAnalysisResult result) {
+        return result.getCallGraph()
+                .edges()
+                .map(edge -> edge.getCallSite().getContainer() + "/" +
+                        edge.getCallSite() + " -> " + edge.getCallee())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Asserts that each points-to set in {@code smaller} is a subset of
+     * the one of the same variable in {@code larger}.
+     */
+    private static void assertSubsumes(Map<String, Set<String>> larger,
+                                       Map<String, Set<String>> smaller) {
+        smaller.forEach((var, pts) -> Assert.assertTrue(
+                var + ": " + pts + " is not a subset of " + larger.get(var),
+                larger.getOrDefault(var, Set.of()).containsAll(pts)));
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta;
+
+import org.junit.Test;
+import pascal.taie.analysis.Tests;
+
+/**
+ * Runs the test cases of {@link CSPTATest} with the parallel solver,
+ * and compares its results with the same expected results.
+ */
+public class ParallelCSPTATest {
+
+    private static final String DIR = CSPTATest.DIR;
+
+    private static final String PARALLELISM = "parallelism:4";
+
+    @Test
+    public void testNew() {
+        Tests.testCSPTA(DIR, "New", PARALLELISM);
+    }
+
+    @Test
+    public void testAssign() {
+        Tests.testCSPTA(DIR, "Assign", PARALLELISM);
+    }
+
+    @Test
+    public void testStoreLoad() {
+        Tests.testCSPTA(DIR, "StoreLoad", PARALLELISM);
+    }
+
+    @Test
+    public void testCall() {
+        Tests.testCSPTA(DIR, "Call", PARALLELISM);
+    }
+
+    @Test
+    public void testInstanceField() {
+        Tests.testCSPTA(DIR, "InstanceField", PARALLELISM);
+    }
+
+    @Test
+    public void testOneCall() {
+        Tests.testCSPTA(DIR, "OneCall", "cs:1-call", PARALLELISM);
+    }
+
+    @Test
+    public void testOneObject() {
+        Tests.testCSPTA(DIR, "OneObject", "cs:1-obj", PARALLELISM);
+    }
+
+    @Test
+    public void testOneType() {
+        Tests.testCSPTA(DIR, "OneType", "cs:1-type", PARALLELISM);
+    }
+
+    @Test
+    public void testTwoCall() {
+        Tests.testCSPTA(DIR, "TwoCall", "cs:2-call", PARALLELISM);
+    }
+
+    @Test
+    public void testTwoObject() {
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj", PARALLELISM);
+    }
+
+    @Test
+    public void testTwoType() {
+        Tests.testCSPTA(DIR, "TwoType", "cs:2-type", PARALLELISM);
+    }
+
+    @Test
+    public void testStaticField() {
+        Tests.testCSPTA(DIR, "StaticField", PARALLELISM);
+    }
+
+    @Test
+    public void testArray() {
+        Tests.testCSPTA(DIR, "Array", PARALLELISM);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.pta.pts;
+
+import org.junit.Test;
+import pascal.taie.analysis.pta.core.cs.context.ListContext;
+import pascal.taie.analysis.pta.core.cs.element.ArrayBasedCSManager;
+import pascal.taie.analysis.pta.core.cs.element.CSManager;
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.heap.MockObj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PointsToSetPoolTest {
+
+    private final CSManager csManager = new ArrayBasedCSManager();
+
+    private CSObj obj(String name) {
+        return csManager.getCSObj(ListContext.make(),
+                new MockObj(name, name, null));
+    }
+
+    private static PointsToSet make(PointsToSetPool pool, CSObj... objs) {
+        PointsToSet pts = pool.make();
+        for (CSObj obj : objs) {
+            pts.addObject(obj);
+        }
+        return pts;
+    }
+
+    @Test
+    public void testShare() {
+        PointsToSetPool pool = new PointsToSetPool();
+        CSObj a = obj("a"), b = obj("b");
+        PointsToSet s1 = make(pool, a, b);
+        PointsToSet s2 = make(pool, b, a);
+        PointsToSet s3 = make(pool, a);
+        // contents are not shared until they are explicitly shared
+        assertEquals(0, pool.getNumberOfSharedContents());
+        PointsToSetPool.share(s1);
+        PointsToSetPool.share(s2);
+        PointsToSetPool.share(s3);
+        assertEquals(2, pool.getNumberOfSharedContents());
+        assertTrue(((SharedPointsToSet) s1).bits() ==
+                ((SharedPointsToSet) s2).bits());
+        // sharing again does not acquire the contents twice
+        PointsToSetPool.share(s1);
+        PointsToSetPool.release(s2);
+        assertEquals(2, pool.getNumberOfSharedContents());
+        PointsToSetPool.release(s1);
+        assertEquals(1, pool.getNumberOfSharedContents());
+        PointsToSetPool.release(s3);
+        assertEquals(0, pool.getNumberOfSharedContents());
+        assertEquals(make(pool, a, b), s1);
+        assertEquals(2, s2.size());
+    }
+
+    @Test
+    public void testShareEmpty() {
+        PointsToSetPool pool = new PointsToSetPool();
+        CSObj a = obj("a");
+        PointsToSet s1 = pool.make();
+        PointsToSet s2 = pool.make();
+        // new sets share the empty contents
+        assertEquals(1, pool.getNumberOfSharedContents());
+        assertTrue(((SharedPointsToSet) s1).isShared());
+        assertEquals(s1, s2);
+        assertTrue(s1.isEmpty());
+        assertTrue(s1.addObject(a));
+        assertEquals(1, pool.getNumberOfSharedContents());
+        assertTrue(s2.addObject(a));
+        assertEquals(0, pool.getNumberOfSharedContents());
+        // sharing after each update keeps one copy of equal contents
+        PointsToSetPool.share(s1);
+        PointsToSetPool.share(s2);
+        assertEquals(1, pool.getNumberOfSharedContents());
+        assertTrue(((SharedPointsToSet) s1).bits() ==
+                ((SharedPointsToSet) s2).bits());
+    }
+
+    @Test
+    public void testCopyOnWrite() {
+        PointsToSetPool pool = new PointsToSetPool();
+        CSObj a = obj("a"), b = obj("b");
+        PointsToSet s1 = make(pool, a);
+        PointsToSet s2 = make(pool, a);
+        PointsToSetPool.share(s1);
+        PointsToSetPool.share(s2);
+        assertEquals(1, pool.getNumberOfSharedContents());
+        // adding existing objects keeps the contents shared
+        assertFalse(s1.addObject(a));
+        assertTrue(((SharedPointsToSet) s1).isShared());
+        assertTrue(s1.addObject(b));
+        assertFalse(((SharedPointsToSet) s1).isShared());
+        assertEquals(1, pool.getNumberOfSharedContents());
+        assertEquals(2, s1.size());
+        assertEquals(1, s2.size());
+        assertFalse(s2.contains(b));
+        PointsToSet diff = s2.addAllDiff(s1);
+        assertEquals(1, diff.size());
+        assertTrue(diff.contains(b));
+        assertEquals(0, pool.getNumberOfSharedContents());
+        assertEquals(s1, s2);
+    }
+
+    @Test
+    public void testEquals() {
+        PointsToSetPool pool1 = new PointsToSetPool();
+        PointsToSetPool pool2 = new PointsToSetPool();
+        CSObj a = obj("a"), b = obj("b");
+        PointsToSet s1 = make(pool1, a, b);
+        PointsToSet s2 = make(pool2, a, b);
+        PointsToSet s3 = make(pool1, a);
+        PointsToSet bitPts = PointsToSetFactory.make();
+        bitPts.addObject(b);
+        bitPts.addObject(a);
+        assertEquals(s1, s2);
+        assertEquals(s1, bitPts);
+        assertEquals(bitPts, s1);
+        assertEquals(s1.hashCode(), bitPts.hashCode());
+        PointsToSetPool.share(s1);
+        PointsToSetPool.share(s2);
+        PointsToSetPool.share(s3);
+        assertEquals(s1, s2);
+        assertEquals(s1, bitPts);
+        assertEquals(bitPts, s1);
+        assertEquals(s1.hashCode(), bitPts.hashCode());
+        assertNotEquals(s1, s3);
+        assertTrue(s3.addAll(s1));
+        assertEquals(s1, s3);
+        assertEquals(s1.hashCode(), s3.hashCode());
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.util.collection;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LongMapTest {
+
+    @Test
+    public void testPutGet() {
+        LongMap<String> map = new LongMap<>();
+        assertTrue(map.isEmpty());
+        assertTrue(map.put(1, "a"));
+        assertFalse(map.put(1, "b"));
+        assertTrue(map.put(0, null));
+        assertEquals(2, map.size());
+        assertEquals("b", map.get(1));
+        assertTrue(map.containsKey(0));
+        assertNull(map.get(0));
+        assertFalse(map.containsKey(2));
+        assertNull(map.get(2));
+        assertTrue(map.put(Long.MAX_VALUE, "max"));
+        assertEquals("max", map.get(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testGrowth() {
+        LongMap<Long> map = new LongMap<>(1);
+        int n = 10_000;
+        for (long i = 0; i < n; ++i) {
+            // keys that differ only in high bits
+            assertTrue(map.put(i << 32, i));
+        }
+        assertEquals(n, map.size());
+        for (long i = 0; i < n; ++i) {
+            assertEquals(i, (long) map.get(i << 32));
+        }
+        assertFalse(map.containsKey(1));
+    }
+
+    @Test
+    public void testComputeIfAbsent() {
+        LongMap<Object> map = new LongMap<>();
+        Object v = map.computeIfAbsent(42, unused -> new Object());
+        assertSame(v, map.computeIfAbsent(42, unused -> {
+            fail("should not compute present key");
+            return null;
+        }));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testRemove() {
+        LongMap<Integer> map = new LongMap<>();
+        for (int i = 0; i < 100; ++i) {
+            map.put(i, i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(map.remove(i));
+            assertFalse(map.remove(i));
+        }
+        assertEquals(50, map.size());
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(i % 2 != 0, map.containsKey(i));
+        }
+    }
+
+    /**
+     * Compares with {@link HashMap} on random operations over a small key
+     * space, which produces long probe sequences (collisions) and exercises
+     * the backward-shift deletion.
+     */
+    @Test
+    public void testRandom() {
+        Random random = new Random(42);
+        LongMap<Long> map = new LongMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; ++i) {
+            long key = random.nextInt(64) * 1024L;
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, (long) i) == null,
+                        map.put(key, (long) i));
+                case 1 -> assertEquals(expected.remove(key) != null, map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+    }
+
+    @Test
+    public void testNegativeKeys() {
+        LongMap<String> map = new LongMap<>();
+        map.put(0, "zero");
+        // -1 marks the empty slots internally
+        assertFalse(map.containsKey(-1));
+        assertNull(map.get(-1));
+        assertFalse(map.remove(-1));
+        assertFalse(map.containsKey(Long.MIN_VALUE));
+        assertEquals(1, map.size());
+        try {
+            map.put(-1, "x");
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            map.computeIfAbsent(-2, unused -> "x");
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(1, map.size());
+        assertEquals("zero", map.get(0));
+    }
+}
@@ -0,0 +1,21 @@
+public class SuperCall {
+
+    public static void main(String[] args) {
+        SuperCallA a = new SuperCallB();
+        a.m(); // invokevirtual SuperCallA.m() on SuperCallB -> SuperCallB.m()
+    }
+}
+
+class SuperCallA {
+
+    void m() {
+    }
+}
+
+class SuperCallB extends SuperCallA {
+
+    @Override
+    void m() {
+        super.m(); // invokespecial SuperCallA.m() on SuperCallB -> SuperCallA.m()
+    }
+}
@@ -56,33 +56,62 @@ public class ConstantPropagation extends
 
     @Override
     public CPFact newBoundaryFact(CFG<Stmt> cfg) {
-        // TODO - finish me
-        return null;
+        IR ir = cfg.getIR();
+        CPFact entryFact = newInitialFact();
+        for(Var var : ir.getParams())
+        {
+            if(canHoldInt(var))
+                entryFact.update(var,Value.getNAC());
+        }
+        return entryFact;
     }
 
     @Override
     public CPFact newInitialFact() {
-        // TODO - finish me
-        return null;
+        return new CPFact();
     }
 
     @Override
     public void meetInto(CPFact fact, CPFact target) {
-        // TODO - finish me
+        for(Var var:fact.keySet())
+        {
+            target.update(var,meetValue(fact.get(var),target.get(var)));
+        }
     }
 
     /**
      * Meets two Values.
      */
     public Value meetValue(Value v1, Value v2) {
-        // TODO - finish me
-        return null;
+        if(v1.isNAC()||v2.isNAC()) return Value.getNAC();
+        else if(v1.isConstant()&&v2.isUndef()) return v1;
+        else if(v2.isConstant()&&v1.isUndef()) return v2;
+        else if(v1.equals(v2)) return v1;
+        return Value.getNAC();
     }
 
     @Override
     public boolean transferNode(Stmt stmt, CPFact in, CPFact out) {
-        // TODO - finish me
-        return false;
+        if (stmt instanceof DefinitionStmt<?, ?> def)
+        {
+            if(def.getLValue() instanceof Var lvar){
+                Exp rexp = def.getRValue();
+                boolean flag=false;
+                for (Var invar : in.keySet()) {
+                    if (!invar.equals(lvar)) {
+                        flag |= out.update(invar, in.get(invar));
+                    }
+                }
+                if(canHoldInt(lvar))
+                    flag|=out.update(lvar,evaluate(rexp,in));
+                return flag;
+
+            }
+
+
+
+        }
+        return out.copyFrom(in);
     }
 
     /**
@@ -111,7 +140,67 @@ public class ConstantPropagation extends
      * @return the resulting {@link Value}
      */
     public static Value evaluate(Exp exp, CPFact in) {
-        // TODO - finish me
-        return null;
+        if (exp instanceof IntLiteral) {
+            return Value.makeConstant(((IntLiteral) exp).getValue());
+        } else if (exp instanceof Var) {
+            return in.get((Var)exp);
+        } else if (exp instanceof BinaryExp) {
+            BinaryExp binary=(BinaryExp)exp;
+            BinaryExp.Op op = binary.getOperator();
+            Value v1 = evaluate(binary.getOperand1(), in);
+            Value v2 = evaluate(binary.getOperand2(), in);
+            if(v2.isConstant() && v2.getConstant()==0)
+            {
+                if(op instanceof ArithmeticExp.Op)
+                {
+                    BinaryExp.Op tem = (ArithmeticExp.Op) op;
+                    if(tem==ArithmeticExp.Op.REM || tem==ArithmeticExp.Op.DIV) return Value.getUndef();
+                }
+            }
+            if (v1.isConstant() && v2.isConstant()) {
+                int i1 = v1.getConstant();
+                int i2 = v2.getConstant();
+                int tmp=0;
+                if (op instanceof ArithmeticExp.Op)
+                {
+                    ArithmeticExp.Op tem = (ArithmeticExp.Op) op;
+                    if(tem==ArithmeticExp.Op.ADD) tmp=i1+i2;
+                    else if(tem==ArithmeticExp.Op.SUB) tmp=i1-i2;
+                    else if(tem==ArithmeticExp.Op.DIV) tmp=i1/i2;
+                    else if(tem==ArithmeticExp.Op.MUL) tmp=i1*i2;
+                    else if(tem==ArithmeticExp.Op.REM) tmp=i1%i2;
+                }
+                else if (op instanceof ConditionExp.Op)
+                {
+                    ConditionExp.Op tem = (ConditionExp.Op) op;
+                    if(tem==ConditionExp.Op.EQ) tmp=i1 == i2 ? 1 : 0;
+                    else if(tem==ConditionExp.Op.GE) tmp=i1 >= i2 ? 1 : 0;
+                    else if(tem==ConditionExp.Op.LT) tmp=i1 < i2 ? 1 : 0;
+                    else if(tem==ConditionExp.Op.GT) tmp=i1 > i2 ? 1 : 0;
+                    else if(tem==ConditionExp.Op.LE) tmp=i1 <= i2 ? 1 : 0;
+                    else if(tem==ConditionExp.Op.NE) tmp=i1 != i2 ? 1 : 0;
+                }
+                else if (op instanceof ShiftExp.Op)
+                {
+                    ShiftExp.Op tem = (ShiftExp.Op) op;
+                    if(tem==ShiftExp.Op.SHL) tmp=i1<<i2;
+                    else if(tem==ShiftExp.Op.SHR) tmp=i1>>i2;
+                    else if(tem==ShiftExp.Op.USHR) tmp=i1>>>i2;
+                }
+                else if (op instanceof BitwiseExp.Op)
+                {
+                    BitwiseExp.Op tem = (BitwiseExp.Op) op;
+                    if(tem==BitwiseExp.Op.OR) tmp=i1|i2;
+                    else if(tem==BitwiseExp.Op.AND) tmp=i1&i2;
+                    else if(tem==BitwiseExp.Op.XOR) tmp=i1^i2;
+                }
+                return Value.makeConstant(tmp);
+            } else if (v1.isNAC() || v2.isNAC())
+            {
+                return Value.getNAC();
+            }
+            return Value.getUndef();
+        }
+        return Value.getNAC();
     }
 }
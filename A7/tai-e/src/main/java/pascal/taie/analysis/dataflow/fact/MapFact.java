@@ -45,6 +45,12 @@ public class MapFact<K, V> {
      */
     protected final Map<K, V> map;
 
+    /**
+     * Version of this fact, which is increased whenever this fact changes.
+     * It is not part of the content, i.e., it is ignored by equals().
+     */
+    private int version;
+
     /**
      * Constructs a new MapFact with the same mappings as specified Map.
      *
@@ -68,7 +74,11 @@ public class MapFact<K, V> {
      * @return if the update changes this fact.
      */
     public boolean update(K key, V value) {
-        return !Objects.equals(map.put(key, value), value);
+        if (!Objects.equals(map.put(key, value), value)) {
+            ++version;
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -78,7 +88,11 @@ public class MapFact<K, V> {
      * or null if there was no mapping for key.
      */
     public V remove(K key) {
-        return map.remove(key);
+        V oldValue = map.remove(key);
+        if (oldValue != null) {
+            ++version;
+        }
+        return oldValue;
     }
 
     /**
@@ -105,7 +119,18 @@ public class MapFact<K, V> {
      * Clears all content in this fact.
      */
     public void clear() {
-        map.clear();
+        if (!map.isEmpty()) {
+            map.clear();
+            ++version;
+        }
+    }
+
+    /**
+     * @return the version of this fact. If two calls on the same fact
+     * return the same version, then the fact has not changed in between.
+     */
+    public int getVersion() {
+        return version;
     }
 
     /**
@@ -25,6 +25,7 @@ package pascal.taie.analysis.dataflow.inter;
 import pascal.taie.World;
 import pascal.taie.analysis.ProgramAnalysis;
 import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.dataflow.fact.MapFact;
 import pascal.taie.analysis.graph.icfg.CallEdge;
 import pascal.taie.analysis.graph.icfg.CallToReturnEdge;
 import pascal.taie.analysis.graph.icfg.ICFG;
@@ -33,6 +34,9 @@ import pascal.taie.analysis.graph.icfg.ICFGEdge;
 import pascal.taie.analysis.graph.icfg.NormalEdge;
 import pascal.taie.analysis.graph.icfg.ReturnEdge;
 import pascal.taie.config.AnalysisConfig;
+import pascal.taie.util.collection.Maps;
+
+import java.util.Map;
 
 /**
  * Provides common functionalities for {@link InterDataflowAnalysis} implementations.
@@ -49,6 +53,13 @@ public abstract class AbstractInterDataflowAnalysis<Method, Node, Fact>
 
     protected InterSolver<Method, Node, Fact> solver;
 
+    /**
+     * Caches the last edge transfer result of each edge. It is concurrent
+     * as it is shared by the workers of {@link ParallelInterSolver}.
+     */
+    private final Map<ICFGEdge<Node>, CachedFact<Fact>> edgeTransferCache =
+            Maps.newConcurrentMap();
+
     public AbstractInterDataflowAnalysis(AnalysisConfig config) {
         super(config);
     }
@@ -67,6 +78,28 @@ public abstract class AbstractInterDataflowAnalysis<Method, Node, Fact>
     protected void finish() {
     }
 
+    /**
+     * Creates the solver for this analysis. The concrete analysis can
+     * overwrite this method to use a specialized solver.
+     */
+    protected InterSolver<Method, Node, Fact> newSolver() {
+        int parallelism = getParallelism();
+        return parallelism > 1
+                ? new ParallelInterSolver<>(this, icfg, parallelism)
+                : new InterSolver<>(this, icfg);
+    }
+
+    /**
+     * @return the number of workers of the solver, given by option
+     * "parallelism". If it is absent or not greater than 1, the solver
+     * runs sequentially. Parallel solving requires the transfer functions
+     * to be thread-safe for the states shared among ICFG nodes.
+     */
+    protected int getParallelism() {
+        Object parallelism = getOptions().get("parallelism");
+        return parallelism instanceof Integer i ? i : 1;
+    }
+
     /**
      * Dispatches {@code Node} to specific node transfer functions for
      * call nodes and non-call nodes.
@@ -91,11 +124,31 @@ public abstract class AbstractInterDataflowAnalysis<Method, Node, Fact>
     protected abstract boolean transferNonCallNode(Node node, Fact in, Fact out);
 
     /**
-     * Dispatches {@link ICFGEdge} to specific edge transfer functions
-     * according to the concrete type of {@link ICFGEdge}.
+     * Transfers out along edge. For {@link MapFact}s, the result is cached
+     * per edge and reused until the source fact changes (as told by its
+     * version), so the edge transfer functions must only depend on the
+     * given fact, and callers must not modify the returned fact.
      */
     @Override
     public Fact transferEdge(ICFGEdge<Node> edge, Fact out) {
+        if (out instanceof MapFact<?, ?> mapFact) {
+            int version = mapFact.getVersion();
+            CachedFact<Fact> cached = edgeTransferCache.get(edge);
+            if (cached == null || cached.source() != out
+                    || cached.version() != version) {
+                cached = new CachedFact<>(out, version, doTransferEdge(edge, out));
+                edgeTransferCache.put(edge, cached);
+            }
+            return cached.fact();
+        }
+        return doTransferEdge(edge, out);
+    }
+
+    /**
+     * Dispatches {@link ICFGEdge} to specific edge transfer functions
+     * according to the concrete type of {@link ICFGEdge}.
+     */
+    private Fact doTransferEdge(ICFGEdge<Node> edge, Fact out) {
         if (edge instanceof NormalEdge) {
             return transferNormalEdge((NormalEdge<Node>) edge, out);
         } else if (edge instanceof CallToReturnEdge) {
@@ -117,11 +170,17 @@ public abstract class AbstractInterDataflowAnalysis<Method, Node, Fact>
     protected abstract Fact transferReturnEdge(ReturnEdge<Node> edge, Fact returnOut);
     // ----------------------------------------------------------------
 
+    /**
+     * Edge transfer result of the source fact at given version.
+     */
+    private record CachedFact<Fact>(Object source, int version, Fact fact) {
+    }
+
     @Override
     public Object analyze() {
         icfg = World.get().getResult(ICFGBuilder.ID);
         initialize();
-        solver = new InterSolver<>(this, icfg);
+        solver = newSolver();
         DataflowResult<Node, Fact> result = solver.solve();
         finish();
         return result;
@@ -0,0 +1,129 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import pascal.taie.analysis.dataflow.analysis.constprop.Value;
+import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.MultiMap;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Values stored to the elements of an abstract array object.
+ * <p>
+ * The stores are indexed by their index values: the stores with constant
+ * indexes are kept in per-index buckets, and the ones with NAC indexes
+ * are kept in a single NAC bucket. Thus, a load with constant index k
+ * only checks bucket k and the NAC bucket, and a load with NAC index
+ * reads the meet of all stored values, which is maintained on the fly.
+ * <p>
+ * The loads of this array object are also indexed in the same way,
+ * so that a change of bucket k only affects the loads whose index is
+ * k or NAC.
+ */
+class ArrayValues {
+
+    private final ConstantPropagation cp;
+
+    /**
+     * Constant index -> meet of values stored to the index.
+     */
+    private final Map<Integer, Value> constIndexes = Maps.newHybridMap();
+
+    /**
+     * Meet of values stored with NAC indexes.
+     */
+    private Value nacIndex = Value.getUndef();
+
+    /**
+     * Meet of all stored values.
+     */
+    private Value all = Value.getUndef();
+
+    /**
+     * Index value (constant or NAC) -> loads with the index.
+     */
+    private final MultiMap<Value, Stmt> loads = Maps.newMultiMap();
+
+    ArrayValues(ConstantPropagation cp) {
+        this.cp = cp;
+    }
+
+    /**
+     * @return the value of the element(s) that may be accessed via index.
+     */
+    Value get(Value index) {
+        if (index.isUndef()) {
+            return Value.getUndef();
+        } else if (index.isNAC()) {
+            return all;
+        } else {
+            Value value = constIndexes.getOrDefault(
+                    index.getConstant(), Value.getUndef());
+            return cp.meetValue(value, nacIndex);
+        }
+    }
+
+    /**
+     * Records that load accesses this array object via index.
+     */
+    void subscribe(Value index, Stmt load) {
+        if (!index.isUndef()) {
+            loads.put(index, load);
+        }
+    }
+
+    /**
+     * Meets value into the bucket of index, and notifies listener
+     * of the loads that may be affected by this store.
+     */
+    void store(Value index, Value value, Consumer<Stmt> listener) {
+        if (index.isUndef()) {
+            return;
+        }
+        Value newAll = cp.meetValue(all, value);
+        if (!newAll.equals(all)) {
+            all = newAll;
+            loads.get(Value.getNAC()).forEach(listener);
+        }
+        if (index.isNAC()) {
+            Value newV = cp.meetValue(nacIndex, value);
+            if (!newV.equals(nacIndex)) {
+                nacIndex = newV;
+                // every load may access the elements stored with NAC indexes
+                loads.values().forEach(listener);
+            }
+        } else {
+            int i = index.getConstant();
+            Value oldV = constIndexes.getOrDefault(i, Value.getUndef());
+            Value newV = cp.meetValue(oldV, value);
+            if (!newV.equals(oldV)) {
+                constIndexes.put(i, newV);
+                loads.get(index).forEach(listener);
+            }
+        }
+    }
+}
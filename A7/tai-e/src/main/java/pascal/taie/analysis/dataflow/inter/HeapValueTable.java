@@ -0,0 +1,181 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import pascal.taie.analysis.dataflow.analysis.constprop.Value;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.language.classes.JField;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.TwoKeyMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Abstract heap of alias-aware constant propagation.
+ * <p>
+ * This table maintains, for every abstract heap location, i.e.,
+ * instance field (o.f), static field (T.f) and array element (o[i]),
+ * the meet of the values of all stores to the location (see
+ * {@link ArrayValues} for how array elements are indexed). As the values
+ * of stores only go up in the lattice during the analysis, the table is
+ * updated incrementally by meeting the new value into the existing one.
+ * <p>
+ * Loads subscribe to the heap locations they read, and are notified
+ * (via the given listener) when the value of a subscribed location changes.
+ * <p>
+ * All operations are synchronized, as the table is shared by the workers
+ * of {@link ParallelInterSolver}. The listener is called after the lock
+ * is released, so that it may call back into the table or block without
+ * holding up other workers.
+ * <p>
+ * After the analysis finishes, the table is stored in {@link pascal.taie.World}
+ * with key {@link #ID}, so that other clients can query it.
+ */
+public class HeapValueTable {
+
+    public static final String ID = "inter-constprop-heap";
+
+    private final ConstantPropagation cp;
+
+    private final Consumer<Stmt> listener;
+
+    private final TwoKeyMap<Obj, JField, Value> instanceFields = Maps.newTwoKeyMap();
+
+    private final Map<JField, Value> staticFields = Maps.newMap();
+
+    private final Map<Obj, ArrayValues> arrays = Maps.newMap();
+
+    private final MultiMap<Object, Stmt> subscribers = Maps.newMultiMap();
+
+    /**
+     * @param cp       provides the meet operation of {@link Value}s.
+     * @param listener receives the loads whose subscribed locations change.
+     */
+    HeapValueTable(ConstantPropagation cp, Consumer<Stmt> listener) {
+        this.cp = cp;
+        this.listener = listener;
+    }
+
+    // ---------- queries ----------
+
+    /**
+     * @return the value of o.f, or UNDEF if no value has been stored to it.
+     */
+    public synchronized Value getInstanceField(Obj obj, JField field) {
+        return instanceFields.getOrDefault(obj, field, Value.getUndef());
+    }
+
+    /**
+     * @return the value of T.f, or UNDEF if no value has been stored to it.
+     */
+    public synchronized Value getStaticField(JField field) {
+        return staticFields.getOrDefault(field, Value.getUndef());
+    }
+
+    /**
+     * @return the value of o[index], i.e., the meet of the values stored
+     * to the indexes of the array object that may alias the given index.
+     */
+    public synchronized Value getArray(Obj array, Value index) {
+        ArrayValues values = arrays.get(array);
+        return values != null ? values.get(index) : Value.getUndef();
+    }
+
+    // ---------- subscriptions ----------
+
+    synchronized void subscribeInstanceField(Obj obj, JField field, Stmt load) {
+        subscribers.put(new FieldKey(obj, field), load);
+    }
+
+    synchronized void subscribeStaticField(JField field, Stmt load) {
+        subscribers.put(field, load);
+    }
+
+    /**
+     * Array loads subscribe with their index values, which are only
+     * available during the analysis. A load with UNDEF index reads nothing,
+     * and it will subscribe again once its index becomes defined.
+     */
+    synchronized void subscribeArray(Obj array, Value index, Stmt load) {
+        getArrayValues(array).subscribe(index, load);
+    }
+
+    // ---------- updates ----------
+
+    /**
+     * Meets value into o.f, and notifies the subscribers if o.f changes.
+     */
+    void storeInstanceField(Obj obj, JField field, Value value) {
+        List<Stmt> changedLoads = new ArrayList<>();
+        synchronized (this) {
+            Value oldV = getInstanceField(obj, field);
+            Value newV = cp.meetValue(oldV, value);
+            if (!newV.equals(oldV)) {
+                instanceFields.put(obj, field, newV);
+                changedLoads.addAll(subscribers.get(new FieldKey(obj, field)));
+            }
+        }
+        changedLoads.forEach(listener);
+    }
+
+    /**
+     * Meets value into T.f, and notifies the subscribers if T.f changes.
+     */
+    void storeStaticField(JField field, Value value) {
+        List<Stmt> changedLoads = new ArrayList<>();
+        synchronized (this) {
+            Value oldV = getStaticField(field);
+            Value newV = cp.meetValue(oldV, value);
+            if (!newV.equals(oldV)) {
+                staticFields.put(field, newV);
+                changedLoads.addAll(subscribers.get(field));
+            }
+        }
+        changedLoads.forEach(listener);
+    }
+
+    /**
+     * Meets value into o[index], and notifies the subscribers
+     * whose accessed elements may change.
+     */
+    void storeArray(Obj array, Value index, Value value) {
+        List<Stmt> changedLoads = new ArrayList<>();
+        synchronized (this) {
+            getArrayValues(array).store(index, value, changedLoads::add);
+        }
+        changedLoads.forEach(listener);
+    }
+
+    private ArrayValues getArrayValues(Obj array) {
+        return arrays.computeIfAbsent(array, unused -> new ArrayValues(cp));
+    }
+
+    private record FieldKey(Obj obj, JField field) {
+    }
+}
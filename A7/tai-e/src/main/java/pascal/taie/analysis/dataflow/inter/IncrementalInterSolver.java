@@ -0,0 +1,76 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+import pascal.taie.analysis.dataflow.fact.NodeResult;
+import pascal.taie.analysis.graph.icfg.ICFG;
+
+import java.util.Set;
+
+/**
+ * Solver for incremental inter-procedural data-flow analysis.
+ * <p>
+ * The facts of the nodes that are not affected by code changes are
+ * restored from the result of a previous run, and only the affected nodes
+ * (together with the ones that the analysis asks for) are added to the
+ * work-list. Restored facts must be the ones of the previous fixed point,
+ * and they must not depend on the affected nodes; then the result is
+ * the same as the one of {@link InterSolver}.
+ */
+class IncrementalInterSolver<Method, Node, Fact> extends InterSolver<Method, Node, Fact> {
+
+    /**
+     * Facts of the unaffected nodes. Its getInFact()/getOutFact()
+     * return null for the nodes whose facts are not restored.
+     */
+    private final NodeResult<Node, Fact> restored;
+
+    private final Set<Node> seeds;
+
+    IncrementalInterSolver(InterDataflowAnalysis<Node, Fact> analysis,
+                           ICFG<Method, Node> icfg,
+                           NodeResult<Node, Fact> restored,
+                           Set<Node> seeds) {
+        super(analysis, icfg);
+        this.restored = restored;
+        this.seeds = seeds;
+    }
+
+    @Override
+    protected void initializeFacts() {
+        super.initializeFacts();
+        for (Node node : icfg) {
+            Fact in = restored.getInFact(node);
+            Fact out = restored.getOutFact(node);
+            if (in != null && out != null) {
+                result.setInFact(node, in);
+                result.setOutFact(node, out);
+            }
+        }
+    }
+
+    @Override
+    protected void initializeWorkList() {
+        seeds.forEach(this::addToWorkList);
+    }
+}
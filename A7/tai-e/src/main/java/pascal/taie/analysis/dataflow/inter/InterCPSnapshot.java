@@ -0,0 +1,271 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.analysis.dataflow.analysis.constprop.CPFact;
+import pascal.taie.analysis.dataflow.analysis.constprop.Value;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.util.AnalysisException;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.Sets;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Persistent result of inter-procedural constant propagation,
+ * used by the incremental mode of {@link InterConstantPropagation}.
+ * <p>
+ * For each analyzed method, the snapshot records the fingerprint of
+ * the method (see {@link InterConstantPropagation} for what it covers),
+ * the heap locations written by the method, and the IN/OUT facts of its
+ * ICFG nodes. Methods are identified by signatures, nodes are identified
+ * by their keys within the methods, and variables are identified by their
+ * names, so that the snapshot can be reused in later runs.
+ * <p>
+ * The snapshot is stored in a text file, with one record per line and
+ * fields separated by tabs:
+ * <pre>
+ * V  format-version
+ * M  fingerprint  method-signature
+ * S  heap-location
+ * I  node-key  fact
+ * O  node-key  fact
+ * </pre>
+ * where the V record is the first line, and S/I/O records belong to
+ * the preceding M record. A snapshot file that cannot be read, is
+ * malformed, or has another format version is discarded with a warning,
+ * which makes the analysis start from scratch.
+ */
+class InterCPSnapshot {
+
+    private static final Logger logger = LogManager.getLogger(InterCPSnapshot.class);
+
+    private static final String SEP = "\t";
+
+    /**
+     * Version of the snapshot format, which must be changed whenever
+     * the format or the meaning of the facts changes.
+     */
+    private static final String VERSION = "1";
+
+    private final Map<String, MethodSnapshot> methods = Maps.newMap();
+
+    /**
+     * @return the snapshot in the given file, or an empty snapshot
+     * if the file does not exist or cannot be used.
+     */
+    static InterCPSnapshot load(String file) {
+        Path path = Path.of(file);
+        if (!Files.exists(path)) {
+            return new InterCPSnapshot();
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            return read(reader);
+        } catch (IOException e) {
+            logger.warn("Failed to read snapshot file {}, analyzing from scratch: {}",
+                    file, e.getMessage());
+        } catch (MalformedSnapshotException e) {
+            logger.warn("Discarded snapshot file {}, analyzing from scratch: {}",
+                    file, e.getMessage());
+        }
+        return new InterCPSnapshot();
+    }
+
+    private static InterCPSnapshot read(BufferedReader reader) throws IOException {
+        InterCPSnapshot snapshot = new InterCPSnapshot();
+        String line = reader.readLine();
+        if (line == null || !line.equals("V" + SEP + VERSION)) {
+            throw new MalformedSnapshotException(
+                    "expected format version " + VERSION + " at line 1");
+        }
+        int lineNumber = 1;
+        MethodSnapshot current = null;
+        while ((line = reader.readLine()) != null) {
+            ++lineNumber;
+            String[] fields = line.split(SEP, -1);
+            String tag = fields[0];
+            int expectedFields = switch (tag) {
+                case "M", "I", "O" -> 3;
+                case "S" -> 2;
+                default -> throw new MalformedSnapshotException(
+                        "unknown record at line " + lineNumber);
+            };
+            if (fields.length != expectedFields) {
+                throw new MalformedSnapshotException(
+                        "wrong number of fields at line " + lineNumber);
+            }
+            if (tag.equals("M")) {
+                current = new MethodSnapshot(fields[1]);
+                snapshot.methods.put(fields[2], current);
+                continue;
+            }
+            if (current == null) {
+                throw new MalformedSnapshotException(
+                        "record before any method at line " + lineNumber);
+            }
+            switch (tag) {
+                case "S" -> current.storedLocations().add(fields[1]);
+                case "I" -> current.inFacts().put(fields[1], fields[2]);
+                case "O" -> current.outFacts().put(fields[1], fields[2]);
+            }
+        }
+        return snapshot;
+    }
+
+    void save(String file) {
+        try (PrintStream out = new PrintStream(file)) {
+            out.println("V" + SEP + VERSION);
+            methods.forEach((signature, method) -> {
+                out.println("M" + SEP + method.fingerprint() + SEP + signature);
+                method.storedLocations().forEach(loc -> out.println("S" + SEP + loc));
+                method.inFacts().forEach((node, fact) ->
+                        out.println("I" + SEP + node + SEP + fact));
+                method.outFacts().forEach((node, fact) ->
+                        out.println("O" + SEP + node + SEP + fact));
+            });
+            if (out.checkError()) {
+                throw new AnalysisException("Failed to write snapshot file " + file);
+            }
+        } catch (IOException e) {
+            throw new AnalysisException("Failed to write snapshot file " + file, e);
+        }
+    }
+
+    Set<String> getMethods() {
+        return methods.keySet();
+    }
+
+    /**
+     * @return the snapshot of the method with given signature,
+     * or null if the method was not analyzed.
+     */
+    MethodSnapshot getMethod(String signature) {
+        return methods.get(signature);
+    }
+
+    MethodSnapshot addMethod(String signature, String fingerprint) {
+        MethodSnapshot method = new MethodSnapshot(fingerprint);
+        methods.put(signature, method);
+        return method;
+    }
+
+    /**
+     * @return the hash of given text, which is used as fingerprint.
+     */
+    static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(
+                    digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new AnalysisException(e);
+        }
+    }
+
+    static String format(CPFact fact) {
+        return fact.entries()
+                .map(e -> e.getKey().getName() + "=" + e.getValue())
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Parses a fact formatted by {@link #format(CPFact)}.
+     *
+     * @param ir the IR which contains the variables of the fact
+     * @return the parsed fact, or null if any variable is absent in ir,
+     * or the text is malformed.
+     */
+    static CPFact parse(String text, IR ir) {
+        CPFact fact = new CPFact();
+        if (text.isEmpty()) {
+            return fact;
+        }
+        Map<String, Var> vars = ir.getVars()
+                .stream()
+                .collect(Collectors.toMap(Var::getName, v -> v, (v1, v2) -> v1));
+        for (String entry : text.split(",")) {
+            int i = entry.lastIndexOf('=');
+            Var var = i < 0 ? null : vars.get(entry.substring(0, i));
+            Value value = i < 0 ? null : parseValue(entry.substring(i + 1));
+            if (var == null || value == null) {
+                return null;
+            }
+            fact.update(var, value);
+        }
+        return fact;
+    }
+
+    /**
+     * @return the parsed value, or null if the text is malformed.
+     */
+    private static Value parseValue(String text) {
+        return switch (text) {
+            case "UNDEF" -> Value.getUndef();
+            case "NAC" -> Value.getNAC();
+            default -> {
+                try {
+                    yield Value.makeConstant(Integer.parseInt(text));
+                } catch (NumberFormatException e) {
+                    yield null;
+                }
+            }
+        };
+    }
+
+    record MethodSnapshot(String fingerprint, Set<String> storedLocations,
+                          Map<String, String> inFacts,
+                          Map<String, String> outFacts) {
+
+        private MethodSnapshot(String fingerprint) {
+            this(fingerprint, Sets.newSet(),
+                    Maps.newMap(), Maps.newMap());
+        }
+    }
+
+    /**
+     * Thrown when a snapshot file does not conform to the format.
+     */
+    private static class MalformedSnapshotException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private MalformedSnapshotException(String message) {
+            super(message);
+        }
+    }
+}
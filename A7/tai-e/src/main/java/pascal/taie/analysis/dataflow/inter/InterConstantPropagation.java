@@ -22,9 +22,13 @@
 
 package pascal.taie.analysis.dataflow.inter;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import pascal.taie.World;
 import pascal.taie.analysis.dataflow.analysis.constprop.CPFact;
 import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import pascal.taie.analysis.dataflow.analysis.constprop.Value;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
 import pascal.taie.analysis.graph.cfg.CFG;
 import pascal.taie.analysis.graph.cfg.CFGBuilder;
 import pascal.taie.analysis.graph.icfg.CallEdge;
@@ -32,13 +36,30 @@ import pascal.taie.analysis.graph.icfg.CallToReturnEdge;
 import pascal.taie.analysis.graph.icfg.NormalEdge;
 import pascal.taie.analysis.graph.icfg.ReturnEdge;
 import pascal.taie.analysis.pta.PointerAnalysisResult;
+import pascal.taie.analysis.pta.core.heap.Obj;
 import pascal.taie.config.AnalysisConfig;
 import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.ArrayAccess;
+import pascal.taie.ir.exp.InstanceFieldAccess;
 import pascal.taie.ir.exp.InvokeExp;
 import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.FieldStmt;
 import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.LoadArray;
+import pascal.taie.ir.stmt.LoadField;
 import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.ir.stmt.StoreArray;
+import pascal.taie.ir.stmt.StoreField;
+import pascal.taie.language.classes.JField;
 import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.Sets;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 
 /**
  * Implementation of interprocedural constant propagation for int values.
@@ -48,18 +69,306 @@ public class InterConstantPropagation extends
 
     public static final String ID = "inter-constprop";
 
+    private static final Logger logger = LogManager.getLogger(InterConstantPropagation.class);
+
     private final ConstantPropagation cp;
 
+    private final boolean aliasAware;
+
+    private PointerAnalysisResult pta;
+
+    /**
+     * Points-to sets of the base variables of field and array accesses.
+     * They are retrieved from {@link #pta} before solving, so that
+     * the transfer functions do not touch the lazily-built caches of
+     * {@link #pta}, which are not thread-safe.
+     */
+    private final Map<Var, Set<Obj>> basePointsTo = Maps.newMap();
+
+    /**
+     * Values of the abstract heap locations, maintained by stores
+     * and read by loads.
+     */
+    private HeapValueTable heapValues;
+
+    /**
+     * Path of the snapshot file of incremental analysis,
+     * or null if incremental analysis is disabled.
+     */
+    private final String snapshotFile;
+
+    private final MultiMap<JMethod, Stmt> nodesOf = Maps.newMultiMap();
+
+    private final Map<JMethod, String> fingerprints = Maps.newMap();
+
     public InterConstantPropagation(AnalysisConfig config) {
         super(config);
         cp = new ConstantPropagation(new AnalysisConfig(ConstantPropagation.ID));
+        aliasAware = getOptions().getBoolean("alias-aware");
+        snapshotFile = getOptions().getString("incremental-snapshot");
     }
 
     @Override
     protected void initialize() {
         String ptaId = getOptions().getString("pta");
-        PointerAnalysisResult pta = World.get().getResult(ptaId);
-        // You can do initialization work here
+        pta = World.get().getResult(ptaId);
+        heapValues = new HeapValueTable(cp, load -> solver.addToWorkList(load));
+        if (aliasAware) {
+            for (Stmt stmt : icfg.getNodes()) {
+                Var base = getBase(stmt);
+                if (base != null) {
+                    basePointsTo.computeIfAbsent(base, pta::getPointsToSet);
+                }
+            }
+            // let each load subscribe to the heap locations it may read
+            for (Stmt stmt : icfg.getNodes()) {
+                if (stmt instanceof LoadField load &&
+                        ConstantPropagation.canHoldInt(load.getLValue())) {
+                    JField field = load.getFieldRef().resolve();
+                    if (load.isStatic()) {
+                        heapValues.subscribeStaticField(field, load);
+                    } else {
+                        Var base = ((InstanceFieldAccess) load.getFieldAccess()).getBase();
+                        for (Obj obj : pointsToSetOf(base)) {
+                            heapValues.subscribeInstanceField(obj, field, load);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void finish() {
+        World.get().storeResult(HeapValueTable.ID, heapValues);
+        if (snapshotFile != null) {
+            saveSnapshot();
+        }
+    }
+
+    /**
+     * @return the base variable of instance field or array access in stmt,
+     * or null if stmt does not contain such access.
+     */
+    private static Var getBase(Stmt stmt) {
+        if (stmt instanceof FieldStmt<?, ?> fieldStmt && !fieldStmt.isStatic()) {
+            return ((InstanceFieldAccess) fieldStmt.getFieldAccess()).getBase();
+        } else if (stmt instanceof LoadArray load) {
+            return load.getArrayAccess().getBase();
+        } else if (stmt instanceof StoreArray store) {
+            return store.getArrayAccess().getBase();
+        }
+        return null;
+    }
+
+    // ---------- incremental analysis ----------
+
+    /**
+     * Creates the solver for incremental analysis if snapshot file is given.
+     * <p>
+     * A method is changed if it is new, or its fingerprint differs from
+     * the one in the snapshot. The fingerprint covers everything that
+     * the facts of a method may depend on besides the facts of other
+     * methods, i.e., its IR, its callers and callees, whether it is an
+     * entry, and (for alias-aware analysis) the points-to sets of the
+     * bases of its field and array accesses. The nodes of changed methods
+     * are invalidated, and so are all nodes that may be affected by them,
+     * i.e., their ICFG successors and, for alias-aware analysis, the loads
+     * of the heap locations written by affected stores (or by the stores
+     * in the previous version of changed and removed methods), transitively.
+     * The facts of the other nodes are restored from the snapshot.
+     * The incremental solver is sequential, thus option "parallelism"
+     * is ignored in this mode.
+     */
+    @Override
+    protected InterSolver<JMethod, Stmt, CPFact> newSolver() {
+        if (snapshotFile == null) {
+            return super.newSolver();
+        }
+        if (getParallelism() > 1) {
+            logger.warn("Option parallelism is ignored by incremental {}", ID);
+        }
+        icfg.getNodes().forEach(node ->
+                nodesOf.put(icfg.getContainingMethodOf(node), node));
+        InterCPSnapshot previous = InterCPSnapshot.load(snapshotFile);
+        Set<Stmt> seeds = Sets.newSet();
+        Set<String> dirtyLocations = Sets.newSet();
+        Map<Stmt, CPFact> inFacts = Maps.newMap();
+        Map<Stmt, CPFact> outFacts = Maps.newMap();
+        int nChanged = 0;
+        for (JMethod method : nodesOf.keySet()) {
+            String fingerprint = computeFingerprint(method);
+            fingerprints.put(method, fingerprint);
+            InterCPSnapshot.MethodSnapshot old = previous.getMethod(method.getSignature());
+            if (old == null || !old.fingerprint().equals(fingerprint)
+                    || !restoreFacts(method, old, inFacts, outFacts)) {
+                ++nChanged;
+                seeds.addAll(nodesOf.get(method));
+                if (old != null) {
+                    dirtyLocations.addAll(old.storedLocations());
+                }
+            }
+        }
+        Set<String> signatures = Sets.newSet();
+        nodesOf.keySet().forEach(m -> signatures.add(m.getSignature()));
+        previous.getMethods().forEach(signature -> {
+            if (!signatures.contains(signature)) { // removed method
+                dirtyLocations.addAll(previous.getMethod(signature).storedLocations());
+            }
+        });
+        Set<Stmt> affected = computeAffected(seeds, dirtyLocations);
+        DataflowResult<Stmt, CPFact> restored = new DataflowResult<>();
+        inFacts.forEach((node, in) -> {
+            if (!affected.contains(node)) {
+                restored.setInFact(node, in);
+                restored.setOutFact(node, outFacts.get(node));
+            }
+        });
+        Set<Stmt> workList = Sets.newHybridSet(affected);
+        if (aliasAware) {
+            // re-run all stores to rebuild the heap values
+            icfg.getNodes()
+                    .stream()
+                    .filter(node -> getHeapLocation(node) != null && isStore(node))
+                    .forEach(workList::add);
+        }
+        logger.info("Incremental {}: {}/{} methods changed, {}/{} nodes affected",
+                ID, nChanged, nodesOf.keySet().size(),
+                affected.size(), icfg.getNodes().size());
+        return new IncrementalInterSolver<>(this, icfg, restored, workList);
+    }
+
+    private String computeFingerprint(JMethod method) {
+        StringBuilder sb = new StringBuilder();
+        if (icfg.entryMethods().anyMatch(method::equals)) {
+            sb.append("entry\n");
+        }
+        icfg.getCallersOf(method)
+                .stream()
+                .map(callSite -> icfg.getContainingMethodOf(callSite).getSignature()
+                        + "#" + callSite.getIndex())
+                .sorted()
+                .forEach(caller -> sb.append("caller ").append(caller).append('\n'));
+        IR ir = method.getIR();
+        ir.getVars().forEach(var -> sb.append(var.getName())
+                .append(':').append(var.getType()).append('\n'));
+        for (Stmt stmt : ir) {
+            sb.append(stmt.getIndex()).append(' ').append(stmt).append('\n');
+            if (icfg.isCallSite(stmt)) {
+                icfg.getCalleesOf(stmt)
+                        .stream()
+                        .map(JMethod::getSignature)
+                        .sorted()
+                        .forEach(callee -> sb.append("-> ").append(callee).append('\n'));
+            }
+            Var base = getBase(stmt);
+            if (aliasAware && base != null) {
+                pointsToSetOf(base)
+                        .stream()
+                        .map(Obj::toString)
+                        .sorted()
+                        .forEach(obj -> sb.append("pts ").append(obj).append('\n'));
+            }
+        }
+        return InterCPSnapshot.hash(sb.toString());
+    }
+
+    /**
+     * Restores facts of the nodes of method from its snapshot.
+     *
+     * @return false if any fact cannot be restored.
+     */
+    private boolean restoreFacts(JMethod method, InterCPSnapshot.MethodSnapshot snapshot,
+                                 Map<Stmt, CPFact> inFacts, Map<Stmt, CPFact> outFacts) {
+        IR ir = method.getIR();
+        Map<Stmt, CPFact> ins = Maps.newMap();
+        Map<Stmt, CPFact> outs = Maps.newMap();
+        for (Stmt node : nodesOf.get(method)) {
+            String key = getNodeKey(method, node);
+            String in = snapshot.inFacts().get(key);
+            String out = snapshot.outFacts().get(key);
+            CPFact inFact = in != null ? InterCPSnapshot.parse(in, ir) : null;
+            CPFact outFact = out != null ? InterCPSnapshot.parse(out, ir) : null;
+            if (inFact == null || outFact == null) {
+                return false;
+            }
+            ins.put(node, inFact);
+            outs.put(node, outFact);
+        }
+        inFacts.putAll(ins);
+        outFacts.putAll(outs);
+        return true;
+    }
+
+    private Set<Stmt> computeAffected(Set<Stmt> seeds, Set<String> dirtyLocations) {
+        MultiMap<String, Stmt> loads = Maps.newMultiMap();
+        if (aliasAware) {
+            icfg.getNodes().forEach(node -> {
+                String location = getHeapLocation(node);
+                if (location != null && !isStore(node)) {
+                    loads.put(location, node);
+                }
+            });
+        }
+        Set<Stmt> affected = Sets.newSet();
+        Queue<Stmt> queue = new ArrayDeque<>(seeds);
+        dirtyLocations.forEach(location -> queue.addAll(loads.get(location)));
+        while (!queue.isEmpty()) {
+            Stmt node = queue.poll();
+            if (affected.add(node)) {
+                queue.addAll(icfg.getSuccsOf(node));
+                String location = getHeapLocation(node);
+                if (location != null && isStore(node)) {
+                    queue.addAll(loads.get(location));
+                }
+            }
+        }
+        return affected;
+    }
+
+    private void saveSnapshot() {
+        InterCPSnapshot snapshot = new InterCPSnapshot();
+        DataflowResult<Stmt, CPFact> result = solver.result;
+        nodesOf.forEachSet((method, nodes) -> {
+            InterCPSnapshot.MethodSnapshot ms = snapshot.addMethod(
+                    method.getSignature(), fingerprints.get(method));
+            for (Stmt node : nodes) {
+                String key = getNodeKey(method, node);
+                ms.inFacts().put(key, InterCPSnapshot.format(result.getInFact(node)));
+                ms.outFacts().put(key, InterCPSnapshot.format(result.getOutFact(node)));
+                if (isStore(node) && getHeapLocation(node) != null) {
+                    ms.storedLocations().add(getHeapLocation(node));
+                }
+            }
+        });
+        snapshot.save(snapshotFile);
+    }
+
+    private String getNodeKey(JMethod method, Stmt node) {
+        if (node == icfg.getEntryOf(method)) {
+            return "entry";
+        } else if (node == icfg.getExitOf(method)) {
+            return "exit";
+        } else {
+            return Integer.toString(node.getIndex());
+        }
+    }
+
+    /**
+     * @return the heap location accessed by stmt, or null if stmt
+     * does not access heap. All array elements are regarded as one location.
+     */
+    private static String getHeapLocation(Stmt stmt) {
+        if (stmt instanceof FieldStmt<?, ?> fieldStmt) {
+            return fieldStmt.getFieldRef().resolve().getSignature();
+        } else if (stmt instanceof LoadArray || stmt instanceof StoreArray) {
+            return "[]";
+        }
+        return null;
+    }
+
+    private static boolean isStore(Stmt stmt) {
+        return stmt instanceof StoreField || stmt instanceof StoreArray;
     }
 
     @Override
@@ -85,37 +394,141 @@ public class InterConstantPropagation extends
 
     @Override
     protected boolean transferCallNode(Stmt stmt, CPFact in, CPFact out) {
-        // TODO - finish me
-        return false;
+        return out.copyFrom(in);
     }
 
     @Override
     protected boolean transferNonCallNode(Stmt stmt, CPFact in, CPFact out) {
-        // TODO - finish me
-        return false;
+        if (aliasAware) {
+            if (stmt instanceof StoreField store) {
+                transferStoreField(store, in);
+                return out.copyFrom(in);
+            } else if (stmt instanceof StoreArray store) {
+                transferStoreArray(store, in);
+                return out.copyFrom(in);
+            } else if (stmt instanceof LoadField load &&
+                    ConstantPropagation.canHoldInt(load.getLValue())) {
+                return transferLoad(load.getLValue(), loadField(load), in, out);
+            } else if (stmt instanceof LoadArray load &&
+                    ConstantPropagation.canHoldInt(load.getLValue())) {
+                return transferLoad(load.getLValue(), loadArray(load, in), in, out);
+            }
+        }
+        return cp.transferNode(stmt, in, out);
+    }
+
+    private Set<Obj> pointsToSetOf(Var base) {
+        return basePointsTo.get(base);
+    }
+
+    private void transferStoreField(StoreField store, CPFact in) {
+        Var rvar = store.getRValue();
+        if (ConstantPropagation.canHoldInt(rvar)) {
+            Value value = in.get(rvar);
+            JField field = store.getFieldRef().resolve();
+            if (store.isStatic()) {
+                heapValues.storeStaticField(field, value);
+            } else {
+                Var base = ((InstanceFieldAccess) store.getFieldAccess()).getBase();
+                for (Obj obj : pointsToSetOf(base)) {
+                    heapValues.storeInstanceField(obj, field, value);
+                }
+            }
+        }
+    }
+
+    private void transferStoreArray(StoreArray store, CPFact in) {
+        Var rvar = store.getRValue();
+        if (ConstantPropagation.canHoldInt(rvar)) {
+            Value value = in.get(rvar);
+            ArrayAccess access = store.getArrayAccess();
+            Value index = in.get(access.getIndex());
+            for (Obj array : pointsToSetOf(access.getBase())) {
+                heapValues.storeArray(array, index, value);
+            }
+        }
+    }
+
+    private Value loadField(LoadField load) {
+        JField field = load.getFieldRef().resolve();
+        if (load.isStatic()) {
+            return heapValues.getStaticField(field);
+        }
+        Value value = Value.getUndef();
+        Var base = ((InstanceFieldAccess) load.getFieldAccess()).getBase();
+        for (Obj obj : pointsToSetOf(base)) {
+            value = cp.meetValue(value, heapValues.getInstanceField(obj, field));
+        }
+        return value;
+    }
+
+    private Value loadArray(LoadArray load, CPFact in) {
+        ArrayAccess access = load.getArrayAccess();
+        Value index = in.get(access.getIndex());
+        Value value = Value.getUndef();
+        for (Obj array : pointsToSetOf(access.getBase())) {
+            heapValues.subscribeArray(array, index, load);
+            value = cp.meetValue(value, heapValues.getArray(array, index));
+        }
+        return value;
+    }
+
+    /**
+     * Transfers in to out, and assigns the loaded value to lvar.
+     */
+    private static boolean transferLoad(Var lvar, Value value, CPFact in, CPFact out) {
+        boolean changed = false;
+        for (Var var : in.keySet()) {
+            if (!var.equals(lvar)) {
+                changed |= out.update(var, in.get(var));
+            }
+        }
+        return out.update(lvar, value) || changed;
     }
 
     @Override
     protected CPFact transferNormalEdge(NormalEdge<Stmt> edge, CPFact out) {
-        // TODO - finish me
-        return null;
+        return out.copy();
     }
 
     @Override
     protected CPFact transferCallToReturnEdge(CallToReturnEdge<Stmt> edge, CPFact out) {
-        // TODO - finish me
-        return null;
+        CPFact result = out.copy();
+        if (edge.getSource() instanceof Invoke callSite)
+        {
+            Var lvar = callSite.getLValue();
+            if (lvar != null) result.remove(lvar);
+        }
+        return result;
     }
 
     @Override
     protected CPFact transferCallEdge(CallEdge<Stmt> edge, CPFact callSiteOut) {
-        // TODO - finish me
-        return null;
+        CPFact result = newInitialFact();
+        IR targetMethodIR = edge.getCallee().getIR();
+        Invoke callSite = (Invoke) edge.getSource();
+        int argCount = callSite.getRValue().getArgCount();
+        for (int index = 0; index < argCount; index++)
+        {
+            Var srcArg = callSite.getRValue().getArg(index), dstArg = targetMethodIR.getParam(index);
+            result.update(dstArg, callSiteOut.get(srcArg));
+        }
+        return result;
     }
 
     @Override
     protected CPFact transferReturnEdge(ReturnEdge<Stmt> edge, CPFact returnOut) {
-        // TODO - finish me
-        return null;
+        Var lvar = ((Invoke) edge.getCallSite()).getLValue();
+        CPFact result = newInitialFact();
+        if (lvar != null) {
+            for(Var ret:edge.getReturnVars())
+            {
+                Value invkval = result.get(lvar);
+                Value retval = returnOut.get(ret);
+                Value val = cp.meetValue(invkval,retval);
+                result.update(lvar, val);
+            }
+        }
+        return result;
     }
 }
@@ -24,8 +24,10 @@ package pascal.taie.analysis.dataflow.inter;
 
 import pascal.taie.analysis.dataflow.fact.DataflowResult;
 import pascal.taie.analysis.graph.icfg.ICFG;
+import pascal.taie.analysis.graph.icfg.ICFGEdge;
 import pascal.taie.util.collection.SetQueue;
 
+import java.util.HashSet;
 import java.util.Queue;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -37,11 +39,11 @@ import java.util.stream.Collectors;
  */
 class InterSolver<Method, Node, Fact> {
 
-    private final InterDataflowAnalysis<Node, Fact> analysis;
+    protected final InterDataflowAnalysis<Node, Fact> analysis;
 
-    private final ICFG<Method, Node> icfg;
+    protected final ICFG<Method, Node> icfg;
 
-    private DataflowResult<Node, Fact> result;
+    protected DataflowResult<Node, Fact> result;
 
     private Queue<Node> workList;
 
@@ -58,11 +60,65 @@ class InterSolver<Method, Node, Fact> {
         return result;
     }
 
-    private void initialize() {
-        // TODO - finish me
+    /**
+     * Adds a node to the work-list, so that it will be re-analyzed.
+     * This allows the analysis to notify the solver of changes that
+     * are not propagated along ICFG edges, e.g., via aliased heap locations.
+     */
+    void addToWorkList(Node node) {
+        workList.add(node);
     }
 
-    private void doSolve() {
-        // TODO - finish me
+    protected void initialize() {
+        initializeFacts();
+        workList = new SetQueue<>();
+        initializeWorkList();
+    }
+
+    /**
+     * Adds the nodes to be analyzed at the beginning to the work-list.
+     */
+    protected void initializeWorkList() {
+        workList.addAll(icfg.getNodes());
+    }
+
+    /**
+     * Sets boundary facts for entry nodes and initial facts for other nodes.
+     */
+    protected void initializeFacts() {
+        Set<Node> tmp = new HashSet<>();
+        icfg.entryMethods().forEach(entryMethod -> {
+            Node entryNode = icfg.getEntryOf(entryMethod);
+            tmp.add(entryNode);
+            result.setInFact(entryNode, analysis.newBoundaryFact(entryNode));
+            result.setOutFact(entryNode, analysis.newBoundaryFact(entryNode));
+        });
+        for (Node node : icfg.getNodes())
+        {
+            if (!tmp.contains(node))
+            {
+                result.setInFact(node, analysis.newInitialFact());
+                result.setOutFact(node, analysis.newInitialFact());
+            }
+        }
+    }
+
+    protected void doSolve() {
+        boolean isChanged;
+
+        while (!workList.isEmpty()) {
+            Node node = workList.poll();
+            Fact inFact = result.getInFact(node);
+            Fact outFact = result.getOutFact(node);
+            for (ICFGEdge<Node> edge : icfg.getInEdgesOf(node)) {
+                Fact edgeInFact = result.getOutFact(edge.getSource());
+                Fact edgeOutFact = analysis.transferEdge(edge, edgeInFact);
+                analysis.meetInto(edgeOutFact, inFact);
+            }
+            isChanged = analysis.transferNode(node, inFact, outFact);
+            if (isChanged) {
+                workList.addAll(icfg.getSuccsOf(node));
+            }
+        }
     }
 }
@@ -0,0 +1,265 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+import pascal.taie.analysis.graph.icfg.ICFG;
+import pascal.taie.analysis.graph.icfg.ICFGEdge;
+import pascal.taie.util.AnalysisException;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.SetQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parallel solver for inter-procedural data-flow analysis.
+ * <p>
+ * The ICFG nodes are partitioned by their containing methods, and each
+ * partition is owned by one worker, which has its own work-list. Only the
+ * owner reads and writes the facts of the nodes in its partition.
+ * Facts crossing partitions (i.e., along call and return edges whose
+ * source and target are owned by different workers) are transferred by
+ * the worker of the source node, and then sent to the mailbox (a lock-free
+ * queue) of the worker of the target node. A worker that has nothing to
+ * do parks until a message is posted to it or the solving finishes.
+ * <p>
+ * As the work-list algorithm computes the same fixed point regardless of
+ * the order in which nodes are processed, this solver produces the same
+ * result as {@link InterSolver}. The analysis must be thread-safe for
+ * the parts shared among nodes, e.g., the heap of alias-aware analysis.
+ */
+class ParallelInterSolver<Method, Node, Fact> extends InterSolver<Method, Node, Fact> {
+
+    /**
+     * Maximum time for which an idle worker parks. Workers are unparked
+     * when they receive messages, so this only bounds the delay of
+     * a missed wake-up, e.g., the one before the worker thread starts.
+     */
+    private static final long IDLE_NANOS = 1_000_000;
+
+    private final int parallelism;
+
+    private final List<Worker> workers;
+
+    private final Map<Method, Worker> owners = Maps.newMap();
+
+    /**
+     * Number of pending work-list nodes and mailbox messages of all workers.
+     * The solving finishes when it drops to 0.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    ParallelInterSolver(InterDataflowAnalysis<Node, Fact> analysis,
+                        ICFG<Method, Node> icfg, int parallelism) {
+        super(analysis, icfg);
+        this.parallelism = parallelism;
+        this.workers = new ArrayList<>(parallelism);
+    }
+
+    @Override
+    void addToWorkList(Node node) {
+        // may be called by any worker, thus always go through the mailbox
+        ownerOf(node).post(new Message<>(null, node, null));
+    }
+
+    @Override
+    protected void initialize() {
+        initializeFacts();
+        for (int i = 0; i < parallelism; ++i) {
+            workers.add(new Worker());
+        }
+        for (Node node : icfg) {
+            Method method = icfg.getContainingMethodOf(node);
+            Worker owner = owners.get(method);
+            if (owner == null) {
+                owner = workers.get(owners.size() % parallelism);
+                owners.put(method, owner);
+            }
+            owner.addToWorkList(node);
+        }
+        // the edges crossing partitions initially carry the transferred
+        // initial facts, just as what InterSolver sees at the beginning
+        for (Node node : icfg) {
+            Worker owner = ownerOf(node);
+            for (ICFGEdge<Node> edge : icfg.getInEdgesOf(node)) {
+                if (ownerOf(edge.getSource()) != owner) {
+                    owner.received.put(edge, analysis.transferEdge(
+                            edge, result.getOutFact(edge.getSource())));
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void doSolve() {
+        List<Thread> threads = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; ++i) {
+            Worker worker = workers.get(i);
+            Thread thread = new Thread(worker, "inter-solver-" + i);
+            worker.thread = thread;
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException("Interrupted while solving", e);
+        }
+        if (failure.get() != null) {
+            throw new AnalysisException("Failed to solve", failure.get());
+        }
+    }
+
+    private Worker ownerOf(Node node) {
+        return owners.get(icfg.getContainingMethodOf(node));
+    }
+
+    /**
+     * Marks a pending item as done. If it is the last one, or the solving
+     * failed, wakes up all workers so that they can finish.
+     */
+    private void done() {
+        if (pending.decrementAndGet() == 0) {
+            wakeUpAll();
+        }
+    }
+
+    private void wakeUpAll() {
+        workers.forEach(Worker::wakeUp);
+    }
+
+    /**
+     * Message sent to a worker. If edge is not null, then fact is the
+     * result of transferring the OUT fact of the edge source along edge.
+     * Otherwise, node needs to be re-analyzed.
+     */
+    private record Message<Node, Fact>(ICFGEdge<Node> edge, Node node, Fact fact) {
+    }
+
+    private class Worker implements Runnable {
+
+        /**
+         * Only accessed by the thread of this worker after initialization.
+         */
+        private final Queue<Node> workList = new SetQueue<>();
+
+        private final Queue<Message<Node, Fact>> mailbox = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Latest facts transferred along the in-edges from other partitions.
+         */
+        private final Map<ICFGEdge<Node>, Fact> received = Maps.newMap();
+
+        /**
+         * The thread that runs this worker, set before the thread starts.
+         */
+        private volatile Thread thread;
+
+        private void addToWorkList(Node node) {
+            if (workList.add(node)) {
+                pending.incrementAndGet();
+            }
+        }
+
+        private void post(Message<Node, Fact> message) {
+            pending.incrementAndGet();
+            mailbox.add(message);
+            wakeUp();
+        }
+
+        private void wakeUp() {
+            Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (pending.get() > 0 && failure.get() == null) {
+                    Message<Node, Fact> message;
+                    while ((message = mailbox.poll()) != null) {
+                        receive(message);
+                        done();
+                    }
+                    Node node = workList.poll();
+                    if (node != null) {
+                        process(node);
+                        done();
+                    } else if (mailbox.isEmpty()) {
+                        // a message posted after the check above unparks
+                        // this thread, thus the wake-up is not lost
+                        LockSupport.parkNanos(this, IDLE_NANOS);
+                    }
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                wakeUpAll();
+            }
+        }
+
+        private void receive(Message<Node, Fact> message) {
+            if (message.edge() != null) {
+                received.put(message.edge(), message.fact());
+                addToWorkList(message.edge().getTarget());
+            } else {
+                addToWorkList(message.node());
+            }
+        }
+
+        private void process(Node node) {
+            Fact inFact = result.getInFact(node);
+            Fact outFact = result.getOutFact(node);
+            for (ICFGEdge<Node> edge : icfg.getInEdgesOf(node)) {
+                Fact edgeOutFact = ownerOf(edge.getSource()) == this
+                        ? analysis.transferEdge(edge, result.getOutFact(edge.getSource()))
+                        : received.get(edge);
+                analysis.meetInto(edgeOutFact, inFact);
+            }
+            if (analysis.transferNode(node, inFact, outFact)) {
+                for (ICFGEdge<Node> edge : icfg.getOutEdgesOf(node)) {
+                    Node succ = edge.getTarget();
+                    Worker owner = ownerOf(succ);
+                    if (owner == this) {
+                        addToWorkList(succ);
+                    } else {
+                        owner.post(new Message<>(edge, null,
+                                analysis.transferEdge(edge, outFact)));
+                    }
+                }
+            }
+        }
+    }
+}
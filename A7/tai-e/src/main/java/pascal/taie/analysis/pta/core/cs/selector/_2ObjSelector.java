@@ -42,19 +42,23 @@ public class _2ObjSelector implements ContextSelector {
 
     @Override
     public Context selectContext(CSCallSite callSite, JMethod callee) {
-        // TODO - finish me
-        return null;
+        return callSite.getContext();
     }
 
     @Override
     public Context selectContext(CSCallSite callSite, CSObj recv, JMethod callee) {
-        // TODO - finish me
-        return null;
+        Context context = recv.getContext();
+        return context.getLength() == 0 ?
+                ListContext.make(recv.getObject()) :
+                ListContext.make(context.getElementAt(context.getLength() - 1),
+                        recv.getObject());
     }
 
     @Override
     public Context selectHeapContext(CSMethod method, Obj obj) {
-        // TODO - finish me
-        return null;
+        Context context = method.getContext();
+        return context.getLength() == 0 ?
+                getEmptyContext() :
+                ListContext.make(context.getElementAt(context.getLength() - 1));
     }
 }
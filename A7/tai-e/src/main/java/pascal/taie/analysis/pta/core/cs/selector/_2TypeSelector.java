@@ -43,19 +43,23 @@ public class _2TypeSelector implements ContextSelector {
 
     @Override
     public Context selectContext(CSCallSite callSite, JMethod callee) {
-        // TODO - finish me
-        return null;
+        return callSite.getContext();
     }
 
     @Override
     public Context selectContext(CSCallSite callSite, CSObj recv, JMethod callee) {
-        // TODO - finish me
-        return null;
+        Context context = recv.getContext();
+        Type type = recv.getObject().getContainerType();
+        return context.getLength() == 0 ?
+                ListContext.make(type) :
+                ListContext.make(context.getElementAt(context.getLength() - 1), type);
     }
 
     @Override
     public Context selectHeapContext(CSMethod method, Obj obj) {
-        // TODO - finish me
-        return null;
+        Context context = method.getContext();
+        return context.getLength() == 0 ?
+                getEmptyContext() :
+                ListContext.make(context.getElementAt(context.getLength() - 1));
     }
 }
@@ -111,7 +111,10 @@ class Solver {
      * Processes new reachable context-sensitive method.
      */
     private void addReachable(CSMethod csMethod) {
-        // TODO - finish me
+        if (callGraph.addReachableMethod(csMethod)) {
+            StmtProcessor stmtProcessor = new StmtProcessor(csMethod);
+            csMethod.getMethod().getIR().forEach(stmt -> stmt.accept(stmtProcessor));
+        }
     }
 
     /**
@@ -128,22 +131,107 @@ class Solver {
             this.context = csMethod.getContext();
         }
 
-        // TODO - if you choose to implement addReachable()
-        //  via visitor pattern, then finish me
+        // x = new T()
+        @Override
+        public Void visit(New stmt) {
+            Obj obj = heapModel.getObj(stmt);
+            Context heapContext = contextSelector.selectHeapContext(csMethod, obj);
+            workList.addEntry(csManager.getCSVar(context, stmt.getLValue()),
+                    PointsToSetFactory.make(csManager.getCSObj(heapContext, obj)));
+            return null;
+        }
+
+        // x = y
+        @Override
+        public Void visit(Copy stmt) {
+            addPFGEdge(csManager.getCSVar(context, stmt.getRValue()),
+                    csManager.getCSVar(context, stmt.getLValue()));
+            return null;
+        }
+
+        // x = T.f
+        @Override
+        public Void visit(LoadField stmt) {
+            if (stmt.isStatic()) {
+                addPFGEdge(csManager.getStaticField(stmt.getFieldRef().resolve()),
+                        csManager.getCSVar(context, stmt.getLValue()));
+            }
+            return null;
+        }
+
+        // T.f = y
+        @Override
+        public Void visit(StoreField stmt) {
+            if (stmt.isStatic()) {
+                addPFGEdge(csManager.getCSVar(context, stmt.getRValue()),
+                        csManager.getStaticField(stmt.getFieldRef().resolve()));
+            }
+            return null;
+        }
+
+        // r = T.m(...)
+        @Override
+        public Void visit(Invoke stmt) {
+            if (stmt.isStatic()) {
+                JMethod callee = resolveCallee(null, stmt);
+                CSCallSite csCallSite = csManager.getCSCallSite(context, stmt);
+                Context calleeContext = contextSelector.selectContext(
+                        csCallSite, callee);
+                processCallEdge(new Edge<>(CallKind.STATIC, csCallSite,
+                        csManager.getCSMethod(calleeContext, callee)));
+            }
+            return null;
+        }
     }
 
     /**
      * Adds an edge "source -> target" to the PFG.
      */
     private void addPFGEdge(Pointer source, Pointer target) {
-        // TODO - finish me
+        if (pointerFlowGraph.addEdge(source, target)) {
+            PointsToSet pts = source.getPointsToSet();
+            if (!pts.isEmpty()) {
+                workList.addEntry(target, pts);
+            }
+        }
     }
 
     /**
      * Processes work-list entries until the work-list is empty.
      */
     private void analyze() {
-        // TODO - finish me
+        while (!workList.isEmpty()) {
+            WorkList.Entry entry = workList.pollEntry();
+            Pointer pointer = entry.pointer();
+            PointsToSet delta = propagate(pointer, entry.pointsToSet());
+            if (pointer instanceof CSVar csVar && !delta.isEmpty()) {
+                Var var = csVar.getVar();
+                Context context = csVar.getContext();
+                for (CSObj obj : delta) {
+                    // x.f = y
+                    for (StoreField store : var.getStoreFields()) {
+                        addPFGEdge(csManager.getCSVar(context, store.getRValue()),
+                                csManager.getInstanceField(obj, store.getFieldRef().resolve()));
+                    }
+                    // y = x.f
+                    for (LoadField load : var.getLoadFields()) {
+                        addPFGEdge(csManager.getInstanceField(obj, load.getFieldRef().resolve()),
+                                csManager.getCSVar(context, load.getLValue()));
+                    }
+                    // x[i] = y
+                    for (StoreArray store : var.getStoreArrays()) {
+                        addPFGEdge(csManager.getCSVar(context, store.getRValue()),
+                                csManager.getArrayIndex(obj));
+                    }
+                    // y = x[i]
+                    for (LoadArray load : var.getLoadArrays()) {
+                        addPFGEdge(csManager.getArrayIndex(obj),
+                                csManager.getCSVar(context, load.getLValue()));
+                    }
+                    processCall(csVar, obj);
+                }
+            }
+        }
     }
 
     /**
@@ -151,8 +239,19 @@ class Solver {
      * returns the difference set of pointsToSet and pt(pointer).
      */
     private PointsToSet propagate(Pointer pointer, PointsToSet pointsToSet) {
-        // TODO - finish me
-        return null;
+        PointsToSet delta = PointsToSetFactory.make();
+        PointsToSet pts = pointer.getPointsToSet();
+        for (CSObj obj : pointsToSet) {
+            if (pts.addObject(obj)) {
+                delta.addObject(obj);
+            }
+        }
+        if (!delta.isEmpty()) {
+            for (Pointer succ : pointerFlowGraph.getSuccsOf(pointer)) {
+                workList.addEntry(succ, delta);
+            }
+        }
+        return delta;
     }
 
     /**
@@ -162,7 +261,46 @@ class Solver {
      * @param recvObj set of new discovered objects pointed by the variable.
      */
     private void processCall(CSVar recv, CSObj recvObj) {
-        // TODO - finish me
+        Context context = recv.getContext();
+        for (Invoke callSite : recv.getVar().getInvokes()) {
+            JMethod callee = resolveCallee(recvObj, callSite);
+            CSCallSite csCallSite = csManager.getCSCallSite(context, callSite);
+            Context calleeContext = contextSelector.selectContext(
+                    csCallSite, recvObj, callee);
+            CSMethod csCallee = csManager.getCSMethod(calleeContext, callee);
+            workList.addEntry(
+                    csManager.getCSVar(calleeContext, callee.getIR().getThis()),
+                    PointsToSetFactory.make(recvObj));
+            processCallEdge(new Edge<>(CallGraphs.getCallKind(callSite),
+                    csCallSite, csCallee));
+        }
+    }
+
+    /**
+     * Adds a call edge to the call graph. If the edge is new, makes the
+     * callee reachable and connects arguments and return values.
+     */
+    private void processCallEdge(Edge<CSCallSite, CSMethod> edge) {
+        if (callGraph.addEdge(edge)) {
+            CSMethod csCallee = edge.getCallee();
+            addReachable(csCallee);
+            Context callerContext = edge.getCallSite().getContext();
+            Context calleeContext = csCallee.getContext();
+            Invoke callSite = edge.getCallSite().getCallSite();
+            JMethod callee = csCallee.getMethod();
+            InvokeExp invokeExp = callSite.getInvokeExp();
+            for (int i = 0; i < invokeExp.getArgCount(); ++i) {
+                addPFGEdge(csManager.getCSVar(callerContext, invokeExp.getArg(i)),
+                        csManager.getCSVar(calleeContext, callee.getIR().getParam(i)));
+            }
+            Var result = callSite.getResult();
+            if (result != null) {
+                CSVar csResult = csManager.getCSVar(callerContext, result);
+                for (Var ret : callee.getIR().getReturnVars()) {
+                    addPFGEdge(csManager.getCSVar(calleeContext, ret), csResult);
+                }
+            }
+        }
     }
 
     /**
@@ -0,0 +1,161 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.dataflow.analysis.constprop;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pascal.taie.Main;
+import pascal.taie.World;
+import pascal.taie.analysis.ResultProcessor;
+import pascal.taie.analysis.Tests;
+import pascal.taie.analysis.dataflow.inter.InterConstantPropagation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Tests that incremental re-runs of alias-aware inter-procedural
+ * constant propagation produce the same results as from-scratch runs,
+ * which are given by the expected files of {@link InterCPAliasTest},
+ * or by from-scratch runs on the changed program.
+ */
+public class InterCPIncrementalTest {
+
+    private static final String CLASS_PATH = "src/test/resources/dataflow/constprop/alias";
+
+    private static final String CHANGED_CLASS_PATH = "src/test/resources/dataflow/constprop/incremental";
+
+    private static final String OPTIONS = "edge-refine:false;alias-aware:true;pta:cspta";
+
+    void test(String inputClass) throws IOException {
+        Path snapshot = Path.of("output", inputClass + "-inter-constprop-snapshot.txt");
+        Files.createDirectories(snapshot.getParent());
+        Files.deleteIfExists(snapshot);
+        // the first run analyzes from scratch and saves the snapshot,
+        // and the second run restores the facts from the snapshot
+        run(inputClass, snapshot);
+        run(inputClass, snapshot);
+        // a corrupt snapshot is discarded
+        Files.writeString(snapshot, "S\tcorrupt\n");
+        run(inputClass, snapshot);
+        Files.delete(snapshot);
+    }
+
+    private static void run(String inputClass, Path snapshot) {
+        Tests.test(inputClass, CLASS_PATH, InterConstantPropagation.ID,
+                OPTIONS + ";incremental-snapshot:" + toOption(snapshot),
+                "-a", "cspta=cs:2-obj", "-a", "cg=algorithm:cspta");
+    }
+
+    /**
+     * Analyzes v1 of the program and saves the snapshot, then analyzes v2,
+     * where a store in a callee is changed, incrementally from the snapshot,
+     * and checks that the results equal the ones of a from-scratch run on v2.
+     */
+    @Test
+    public void testChangedMethod() throws IOException {
+        String main = "Incremental";
+        Path snapshot = Path.of("output", main + "-inter-constprop-snapshot.txt");
+        Path v1Result = Path.of("output", main + "-inter-constprop-v1.txt");
+        Path expected = Path.of("output", main + "-inter-constprop-v2.txt");
+        Files.createDirectories(snapshot.getParent());
+        Files.deleteIfExists(snapshot);
+        String incremental = OPTIONS + ";incremental-snapshot:" + toOption(snapshot);
+        run(main, CHANGED_CLASS_PATH + "/v1", incremental, "dump", v1Result);
+        run(main, CHANGED_CLASS_PATH + "/v2", OPTIONS, "dump", expected);
+        Set<String> mismatches = run(main, CHANGED_CLASS_PATH + "/v2",
+                incremental, "compare", expected);
+        Assert.assertTrue("Mismatches of incremental run:\n" +
+                String.join("\n", mismatches), mismatches.isEmpty());
+        Files.delete(snapshot);
+    }
+
+    /**
+     * Runs inter-constprop with given options, and dumps its results to,
+     * or compares them with, given file.
+     *
+     * @return the mismatches if action is "compare".
+     */
+    private static Set<String> run(String main, String classPath, String options,
+                                   String action, Path file) {
+        Main.main(new String[]{"-pp", "-cp", classPath, "-m", main,
+                "-a", InterConstantPropagation.ID + "=" + options,
+                "-a", "cspta=cs:2-obj", "-a", "cg=algorithm:cspta",
+                "-a", String.format("%s=analyses:[%s];action:%s;file:%s",
+                ResultProcessor.ID, InterConstantPropagation.ID,
+                action, toOption(file))});
+        return World.get().getResult(ResultProcessor.ID);
+    }
+
+    private static String toOption(Path path) {
+        return path.toString().replace('\\', '/');
+    }
+
+    @Test
+    public void testArray() throws IOException {
+        test("Array");
+    }
+
+    @Test
+    public void testArrayInter2() throws IOException {
+        test("ArrayInter2");
+    }
+
+    @Test
+    public void testArrayLoops() throws IOException {
+        test("ArrayLoops");
+    }
+
+    @Test
+    public void testInstanceField() throws IOException {
+        test("InstanceField");
+    }
+
+    @Test
+    public void testMultiStores() throws IOException {
+        test("MultiStores");
+    }
+
+    @Test
+    public void testInterprocedural2() throws IOException {
+        test("Interprocedural2");
+    }
+
+    @Test
+    public void testObjSens() throws IOException {
+        test("ObjSens");
+    }
+
+    @Test
+    public void testStaticField() throws IOException {
+        test("StaticField");
+    }
+
+    @Test
+    public void testStaticFieldMultiStores() throws IOException {
+        test("StaticFieldMultiStores");
+    }
+}
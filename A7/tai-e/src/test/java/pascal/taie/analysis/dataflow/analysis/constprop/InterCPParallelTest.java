@@ -0,0 +1,89 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.dataflow.analysis.constprop;
+
+import org.junit.Test;
+import pascal.taie.analysis.Tests;
+import pascal.taie.analysis.dataflow.inter.InterConstantPropagation;
+
+/**
+ * Runs the test cases of {@link InterCPAliasTest} with the parallel
+ * solver, and compares its results with the same expected results,
+ * which are produced by the sequential solver.
+ */
+public class InterCPParallelTest {
+
+    private static final String CLASS_PATH = "src/test/resources/dataflow/constprop/alias";
+
+    void test(String inputClass) {
+        Tests.test(inputClass, CLASS_PATH, InterConstantPropagation.ID,
+                "edge-refine:false;alias-aware:true;pta:cspta;parallelism:4",
+                "-a", "cspta=cs:2-obj", "-a", "cg=algorithm:cspta");
+    }
+
+    @Test
+    public void testArray() {
+        test("Array");
+    }
+
+    @Test
+    public void testArrayInter2() {
+        test("ArrayInter2");
+    }
+
+    @Test
+    public void testArrayLoops() {
+        test("ArrayLoops");
+    }
+
+    @Test
+    public void testInstanceField() {
+        test("InstanceField");
+    }
+
+    @Test
+    public void testMultiStores() {
+        test("MultiStores");
+    }
+
+    @Test
+    public void testInterprocedural2() {
+        test("Interprocedural2");
+    }
+
+    @Test
+    public void testObjSens() {
+        test("ObjSens");
+    }
+
+    @Test
+    public void testStaticField() {
+        test("StaticField");
+    }
+
+    @Test
+    public void testStaticFieldMultiStores() {
+        test("StaticFieldMultiStores");
+    }
+}
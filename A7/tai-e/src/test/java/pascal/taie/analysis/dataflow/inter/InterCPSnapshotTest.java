@@ -0,0 +1,93 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package pascal.taie.analysis.dataflow.inter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class InterCPSnapshotTest {
+
+    private static InterCPSnapshot load(String text) throws IOException {
+        Path file = Files.createTempFile("snapshot", ".txt");
+        try {
+            Files.writeString(file, text);
+            return InterCPSnapshot.load(file.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSaveLoad() throws IOException {
+        InterCPSnapshot snapshot = new InterCPSnapshot();
+        InterCPSnapshot.MethodSnapshot method = snapshot.addMethod("<A: void m()>", "f0");
+        method.storedLocations().add("A.f");
+        method.inFacts().put("entry", "");
+        method.outFacts().put("entry", "x=1,y=NAC");
+        Path file = Files.createTempFile("snapshot", ".txt");
+        try {
+            snapshot.save(file.toString());
+            InterCPSnapshot loaded = InterCPSnapshot.load(file.toString());
+            InterCPSnapshot.MethodSnapshot m = loaded.getMethod("<A: void m()>");
+            assertNotNull(m);
+            assertEquals("f0", m.fingerprint());
+            assertEquals(Set.of("A.f"), m.storedLocations());
+            assertEquals(Map.of("entry", ""), m.inFacts());
+            assertEquals(Map.of("entry", "x=1,y=NAC"), m.outFacts());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMissingFile() {
+        assertTrue(InterCPSnapshot.load("no-such-snapshot.txt").getMethods().isEmpty());
+    }
+
+    @Test
+    public void testRecordBeforeMethod() throws IOException {
+        assertTrue(load("V\t1\nS\tA.f\n").getMethods().isEmpty());
+    }
+
+    @Test
+    public void testShortRecord() throws IOException {
+        assertTrue(load("V\t1\nM\tf0\t<A: void m()>\nI\tentry\n")
+                .getMethods().isEmpty());
+    }
+
+    @Test
+    public void testStaleVersion() throws IOException {
+        assertTrue(load("M\tf0\t<A: void m()>\n").getMethods().isEmpty());
+        assertTrue(load("").getMethods().isEmpty());
+    }
+}
@@ -0,0 +1,26 @@
+class Incremental {
+
+    public static void main(String[] args) {
+        A a = new A();
+        set(a);
+        int x = a.f;
+        int y = twice(x);
+        int z = untouched(3);
+    }
+
+    static void set(A a) {
+        a.f = 2;
+    }
+
+    static int twice(int n) {
+        return n + n;
+    }
+
+    static int untouched(int n) {
+        return n * 2;
+    }
+}
+
+class A {
+    int f;
+}